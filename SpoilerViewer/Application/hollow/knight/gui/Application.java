@@ -3,10 +3,15 @@ package hollow.knight.gui;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -14,9 +19,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Predicate;
+import javax.swing.AbstractAction;
 import javax.swing.BoxLayout;
 import javax.swing.DefaultListCellRenderer;
 import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -28,8 +35,14 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
+import javax.swing.JTextArea;
+import javax.swing.KeyStroke;
 import javax.swing.ListCellRenderer;
 import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 import javax.swing.filechooser.FileFilter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -37,7 +50,9 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import hollow.knight.io.Autosave;
 import hollow.knight.io.FileOpener;
+import hollow.knight.io.HksFormat;
 import hollow.knight.io.JsonUtil;
 import hollow.knight.logic.CheckId;
 import hollow.knight.logic.ICDLException;
@@ -48,6 +63,7 @@ import hollow.knight.logic.ItemChecks.Missing;
 import hollow.knight.logic.ParseException;
 import hollow.knight.logic.Query;
 import hollow.knight.logic.SaveInterface;
+import hollow.knight.logic.SphereAnalysis;
 import hollow.knight.logic.State;
 import hollow.knight.logic.StateContext;
 import hollow.knight.logic.Term;
@@ -57,6 +73,9 @@ public final class Application extends JFrame {
   private static final long serialVersionUID = 1L;
 
   private final Config cfg;
+  private static final int AUTOSAVE_MILLIS = 30_000;
+  private final Autosave autosave;
+  private final Timer autosaveTimer;
   private final TransitionData transitionData;
   private final SearchResult.FilterChangedListener filterChangedListener;
   private final RouteListModel routeListModel;
@@ -74,6 +93,7 @@ public final class Application extends JFrame {
   private final JMenuItem saveICDLFolder;
 
   private final SearchEngine searchEngine;
+  private final BackgroundSearch backgroundSearch;
 
   private final JCheckBoxMenuItem showRawTransitions;
   private final JList<String> searchResultsList;
@@ -87,11 +107,11 @@ public final class Application extends JFrame {
     this.cfg = cfg;
     this.transitionData = TransitionData.load(ctx.roomLabels());
     this.showRawTransitions = new JCheckBoxMenuItem("Raw Transitions");
-    this.filterChangedListener = () -> repopulateSearchResults();
+    this.filterChangedListener = () -> searchSoon();
     this.routeListModel = new RouteListModel(transitionData, ctx);
     this.searchResultsListModel = new SearchResultsListModel(transitionData,
         () -> showRawTransitions.getState(), () -> routeListModel.ctx().darkness(), this::isRouted);
-    this.transitionVisualizerPlacements = new TransitionVisualizerPlacements();
+    this.transitionVisualizerPlacements = new TransitionVisualizerPlacements(transitionData);
     this.saveInterfaces =
         ImmutableList.of(searchResultsListModel, routeListModel, transitionVisualizerPlacements);
     this.checksListeners = ImmutableList.of(searchResultsListModel, routeListModel);
@@ -100,6 +120,8 @@ public final class Application extends JFrame {
 
     setTitle("HKSpoilerViewer");
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    Performance.install();
+    bindPerformanceReport();
 
     this.transitionVisualizer =
         new SingletonWindow<>(this, "Transition Visualizer", () -> new TransitionVisualizer(this));
@@ -117,6 +139,8 @@ public final class Application extends JFrame {
     List<SearchResult.Filter> resultFilters = addFilters(left);
 
     this.searchEngine = new SearchEngine(transitionData, ctx.roomLabels(), resultFilters);
+    this.backgroundSearch =
+        new BackgroundSearch(searchEngine, this::currentState, this::publishSearchResults);
     this.searchResultsList = createSearchResults();
     this.searchResultsPane = new JScrollPane(searchResultsList,
         JScrollPane.VERTICAL_SCROLLBAR_ALWAYS, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
@@ -151,6 +175,36 @@ public final class Application extends JFrame {
     pack();
     refreshLogic();
     setVisible(true);
+
+    this.autosave = new Autosave(cfg.dir(), this::autosaveFailed);
+    if (!recoverAutosave()) {
+      startAutosave();
+    }
+    routeListModel.addListDataListener(new ListDataListener() {
+      @Override
+      public void intervalAdded(ListDataEvent e) {
+        autosaveRoute();
+      }
+
+      @Override
+      public void intervalRemoved(ListDataEvent e) {
+        autosaveRoute();
+      }
+
+      @Override
+      public void contentsChanged(ListDataEvent e) {
+        autosaveRoute();
+      }
+    });
+    this.autosaveTimer = new Timer(AUTOSAVE_MILLIS, e -> autosaveUntrackedSections());
+    autosaveTimer.start();
+    addWindowListener(new WindowAdapter() {
+      @Override
+      public void windowClosing(WindowEvent e) {
+        autosaveTimer.stop();
+        autosave.close();
+      }
+    });
   }
 
   public TransitionData transitionData() {
@@ -225,10 +279,37 @@ public final class Application extends JFrame {
     }
   }
 
+  // Hidden; shows latency percentiles and recent stalls of the UI thread.
+  private void bindPerformanceReport() {
+    KeyStroke ctrlShiftP = KeyStroke.getKeyStroke(KeyEvent.VK_P,
+        InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK);
+    getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(ctrlShiftP,
+        "showPerformance");
+    getRootPane().getActionMap().put("showPerformance", new AbstractAction() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        Performance.showReport(Application.this);
+      }
+    });
+  }
+
   public void refreshLogic() {
-    routeListModel.refreshLogic();
-    repopulateSearchResults();
-    checkEditor.ifOpen(e -> e.repopulateItemResults());
+    Performance.time("refreshLogic", () -> {
+      routeListModel.refreshLogic();
+      repopulateSearchResults();
+      checkEditor.ifOpen(e -> e.repopulateItemResults());
+    });
+  }
+
+  // Like refreshLogic(), for when only logic edits changed.
+  public void refreshEditedLogic() {
+    Performance.time("refreshEditedLogic", () -> {
+      routeListModel.refreshEditedLogic();
+      repopulateSearchResults();
+      checkEditor.ifOpen(e -> e.repopulateItemResults());
+    });
   }
 
   public ItemCheck getSelectedSearchResultCheck() {
@@ -407,6 +488,47 @@ public final class Application extends JFrame {
     }
   }
 
+  private SphereAnalysis analyzeSpheres() {
+    long start = System.nanoTime();
+    try {
+      return SphereAnalysis.analyze(routeListModel.initialState());
+    } finally {
+      Performance.record("Sphere analysis", System.nanoTime() - start);
+    }
+  }
+
+  private String renderCheck(ItemCheck check) {
+    return check.location().displayName(transitionData) + ": "
+        + check.item().displayName(transitionData);
+  }
+
+  private void showSphereAnalysis() {
+    SphereAnalysis analysis = analyzeSpheres();
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(analysis.isCompletable() ? "Completable" : "NOT completable").append(" in ")
+        .append(analysis.spheres().size() - 1).append(" spheres\n");
+    if (!analysis.isCompletable()) {
+      sb.append("\nUnreachable (").append(analysis.unreachable().size()).append("):\n");
+      analysis.unreachable().forEach(c -> sb.append("  ").append(renderCheck(c)).append('\n'));
+    }
+    for (int i = 1; i < analysis.spheres().size(); i++) {
+      sb.append("\nSphere ").append(i).append(":\n");
+      analysis.spheres().get(i)
+          .forEach(c -> sb.append("  ").append(renderCheck(c)).append('\n'));
+    }
+
+    String report = sb.toString();
+    GuiUtil.copyToClipboard(report);
+    JTextArea text = new JTextArea(report);
+    text.setEditable(false);
+    text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    JScrollPane pane = new JScrollPane(text);
+    pane.setPreferredSize(new Dimension(700, 500));
+    JOptionPane.showMessageDialog(this, pane, "Sphere Analysis (Copied to Clipboard!)",
+        JOptionPane.PLAIN_MESSAGE);
+  }
+
   private void editNotchCosts() {
     NotchCostsEditor editor = new NotchCostsEditor(ctx());
     if (editor.performEdit(this)) {
@@ -445,6 +567,10 @@ public final class Application extends JFrame {
     missingItems.addActionListener(GuiUtil.newActionListener(this, this::showItemDiffReport));
     menu.add(missingItems);
 
+    JMenuItem sphereAnalysis = new JMenuItem("Sphere Analysis");
+    sphereAnalysis.addActionListener(GuiUtil.newActionListener(this, this::showSphereAnalysis));
+    menu.add(sphereAnalysis);
+
     JMenuItem editLogic = new JMenuItem("Edit Logic");
     editLogic.addActionListener(GuiUtil.newActionListener(this, () -> logicEditor.getWithFocus()));
     menu.add(editLogic);
@@ -480,6 +606,8 @@ public final class Application extends JFrame {
     file.add(open);
     JMenuItem save = new JMenuItem("Save (*.hks)");
     file.add(save);
+    JMenuItem saveAsJson = new JMenuItem("Save as JSON (*.hks)");
+    file.add(saveAsJson);
     file.add(new JSeparator());
     JMenuItem saveToTxt = new JMenuItem("Save Route as *.txt");
     file.add(saveToTxt);
@@ -513,6 +641,7 @@ public final class Application extends JFrame {
 
     open.addActionListener(GuiUtil.newActionListener(this, this::openFile));
     save.addActionListener(GuiUtil.newActionListener(this, this::saveFile));
+    saveAsJson.addActionListener(GuiUtil.newActionListener(this, this::saveFileAsJson));
     saveToTxt
         .addActionListener(GuiUtil.newActionListener(this, () -> routeListModel.saveAsTxt(this)));
 
@@ -577,7 +706,6 @@ public final class Application extends JFrame {
   }
 
   private void openFile() throws ParseException, IOException, ICDLException {
-    StateContext prevCtx = routeListModel.ctx();
     JFileChooser c = new JFileChooser("Open");
     c.setFileFilter(HKS_OPEN_FILTER);
 
@@ -585,7 +713,11 @@ public final class Application extends JFrame {
       return;
     }
 
-    Path path = c.getSelectedFile().toPath().toAbsolutePath();
+    openPath(c.getSelectedFile().toPath().toAbsolutePath());
+  }
+
+  private void openPath(Path path) throws ParseException, IOException, ICDLException {
+    StateContext prevCtx = routeListModel.ctx();
     FileOpener opener = new FileOpener(saveInterfaces);
     StateContext newCtx = opener.openFile(path);
 
@@ -605,9 +737,19 @@ public final class Application extends JFrame {
     transitionVisualizer.close();
     checkEditor.close();
     refreshLogic();
+    startAutosave();
   }
 
   private void saveFile() throws IOException, ICDLException {
+    saveFile(false);
+  }
+
+  // Plain JSON saves are larger and slower to load, but readable by older versions.
+  private void saveFileAsJson() throws IOException, ICDLException {
+    saveFile(true);
+  }
+
+  private void saveFile(boolean asJson) throws IOException, ICDLException {
     JFileChooser c = new JFileChooser("Save");
     c.setFileFilter(HKS_SAVE_FILTER);
 
@@ -615,23 +757,83 @@ public final class Application extends JFrame {
       return;
     }
 
+    if (isICDL) {
+      ctx().checks().compact();
+    }
+    JsonObject saveData = createSaveData();
+
+    String path = c.getSelectedFile().getAbsolutePath();
+    if (!path.endsWith(".hks")) {
+      path = path + ".hks";
+    }
+
+    if (asJson) {
+      JsonUtil.writeJson(path, saveData);
+    } else {
+      HksFormat.write(path, saveData);
+    }
+    // Everything up to here is saved, so the autosave needn't outlive this session.
+    autosave.start(ctx(), saveData);
+  }
+
+  private JsonObject createSaveData() throws ICDLException {
     JsonObject saveData = new JsonObject();
     saveData.add("Version", new JsonPrimitive(Main.version().toString()));
     saveData.add("RawSpoiler", ctx().rawSpoilerJson());
     saveData.add("RawDarkness", ctx().darkness().toJson());
     if (isICDL) {
       saveData.add("RawICDL", ctx().icdlJson());
-      ctx().checks().compact();
       ctx().saveMutables(saveData);
     }
     saveInterfaces.forEach(i -> saveData.add(i.saveName(), i.save()));
+    return saveData;
+  }
 
-    String path = c.getSelectedFile().getAbsolutePath();
-    if (!path.endsWith(".hks")) {
-      path = path + ".hks";
+  // Journals edits from here on, starting from the full current save data.
+  private void startAutosave() {
+    try {
+      autosave.start(ctx(), createSaveData());
+    } catch (ICDLException ex) {
+      GuiUtil.showStackTrace(this, "Autosave failed", ex);
+    }
+  }
+
+  private void autosaveRoute() {
+    autosave.sectionChanged(routeListModel.saveName(), routeListModel.save());
+  }
+
+  // Sections without change events of their own are small, so they're polled instead.
+  private void autosaveUntrackedSections() {
+    autosave.sectionChanged(searchResultsListModel.saveName(), searchResultsListModel.save());
+    autosave.sectionChanged(transitionVisualizerPlacements.saveName(),
+        transitionVisualizerPlacements.save());
+    if (isICDL) {
+      autosave.sectionChanged(StateContext.TOLERANCES_SAVE_NAME, ctx().tolerances().toJson());
+    }
+  }
+
+  private void autosaveFailed(Exception ex) {
+    SwingUtilities.invokeLater(() -> GuiUtil.showStackTrace(this, "Autosave failed", ex));
+  }
+
+  // Offers to restore work left in the autosave by a session which didn't exit cleanly. Returns
+  // true if it was opened.
+  private boolean recoverAutosave() {
+    if (!autosave.hasRecoveryData()) {
+      return false;
+    }
+    if (JOptionPane.showConfirmDialog(this, "Recover unsaved work from the last session?",
+        "Recover", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+      return false;
     }
 
-    JsonUtil.writeJson(path, saveData);
+    try {
+      openPath(autosave.recover());
+      return true;
+    } catch (Exception ex) {
+      GuiUtil.showStackTrace(this, "Failed to recover autosave: ", ex);
+      return false;
+    }
   }
 
   private void importHKS() throws IOException, ParseException, ICDLException {
@@ -642,7 +844,8 @@ public final class Application extends JFrame {
       return;
     }
 
-    TransitionVisualizerPlacements newPlacements = new TransitionVisualizerPlacements();
+    TransitionVisualizerPlacements newPlacements =
+        new TransitionVisualizerPlacements(transitionData);
     FileOpener opener = new FileOpener(ImmutableList.of(newPlacements));
     StateContext newCtx = opener.openFile(c.getSelectedFile().toPath());
 
@@ -675,6 +878,14 @@ public final class Application extends JFrame {
       return;
     }
 
+    SphereAnalysis analysis = analyzeSpheres();
+    if (!analysis.isCompletable() && JOptionPane.showConfirmDialog(this,
+        analysis.unreachable().size()
+            + " checks can never be reached. See ICDL > Sphere Analysis.\nExport anyway?",
+        "Not Completable", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+      return;
+    }
+
     ctx().checks().compact();
     ctx().saveICDL(c.getSelectedFile().toPath());
   }
@@ -682,7 +893,7 @@ public final class Application extends JFrame {
   private List<SearchResult.Filter> addFilters(JPanel parent) throws ParseException {
     ImmutableList.Builder<SearchResult.Filter> searchFilters = ImmutableList.builder();
 
-    TextFilter textFilter = new TextFilter(transitionData, ctx().roomLabels());
+    TextFilter textFilter = new TextFilter(transitionData, ctx().roomLabels(), this::ctx);
     textFilter.addListener(filterChangedListener);
     textFilter.addGuiToPanel(parent);
     searchFilters.add(textFilter);
@@ -712,7 +923,8 @@ public final class Application extends JFrame {
     JList<String> resultsList = new JList<String>(searchResultsListModel);
     resultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
     Arrays.stream(resultsList.getKeyListeners()).forEach(resultsList::removeKeyListener);
-    resultsList.addKeyListener(resultsListKeyListener());
+    resultsList
+        .addKeyListener(Performance.timed("Search results key", resultsListKeyListener()));
     resultsList.setCellRenderer(resultsListCellRenderer());
 
     return resultsList;
@@ -731,23 +943,23 @@ public final class Application extends JFrame {
           searchResultsList.clearSelection();
         } else if (e.getKeyCode() == KeyEvent.VK_B) {
           searchResultsListModel.addBookmark(searchResultsList.getSelectedIndex());
+          refreshSearchResults();
           searchResultsList.setSelectedIndex(searchResultsListModel.numBookmarks() - 1);
-          repopulateSearchResults();
         } else if (e.getKeyCode() == KeyEvent.VK_W || e.getKeyCode() == KeyEvent.VK_S) {
           boolean up = e.getKeyCode() == KeyEvent.VK_W;
           searchResultsListModel.moveBookmark(searchResultsList.getSelectedIndex(), up);
+          refreshSearchResults();
           searchResultsList.setSelectedIndex(searchResultsList.getSelectedIndex() + (up ? -1 : 1));
-          repopulateSearchResults();
         } else if (e.getKeyCode() == KeyEvent.VK_X) {
           searchResultsListModel.deleteBookmark(currentState(),
               searchResultsList.getSelectedIndex());
-          repopulateSearchResults();
+          refreshSearchResults();
         } else if (e.getKeyCode() == KeyEvent.VK_H) {
           searchResultsListModel.hideResult(searchResultsList.getSelectedIndex());
-          repopulateSearchResults();
+          refreshSearchResults();
         } else if (e.getKeyCode() == KeyEvent.VK_U) {
           searchResultsListModel.unhideResult(searchResultsList.getSelectedIndex());
-          repopulateSearchResults();
+          refreshSearchResults();
         } else if (e.getKeyCode() == KeyEvent.VK_E) {
           ItemCheck check = getSelectedSearchResultCheck();
           if (editCheck(check) && getSelectedRouteCheck() != check) {
@@ -769,10 +981,10 @@ public final class Application extends JFrame {
           }
         } else if (e.getKeyCode() == KeyEvent.VK_D) {
           duplicateCheck(getSelectedSearchResultCheck());
-          repopulateSearchResults();
+          refreshSearchResults();
         } else if (e.getKeyCode() == KeyEvent.VK_Z) {
           deleteCheck(getSelectedSearchResultCheck());
-          repopulateSearchResults();
+          refreshSearchResults();
         } else if (e.getKeyCode() == KeyEvent.VK_SPACE) {
           ItemCheck check = getSelectedSearchResultCheck();
           if (check == null) {
@@ -780,11 +992,11 @@ public final class Application extends JFrame {
           }
 
           addToRoute(check);
-          repopulateSearchResults();
+          refreshSearchResults();
         } else if (e.getKeyCode() == KeyEvent.VK_BACK_SPACE) {
           if (routeListModel.getSize() > 0) {
             routeListModel.removeCheck(routeListModel.getSize() - 1);
-            repopulateSearchResults();
+            refreshSearchResults();
           }
         } else if (UP_DOWN_VALUES.containsKey(e.getKeyCode())) {
           // Navigate up or down.
@@ -822,21 +1034,37 @@ public final class Application extends JFrame {
   }
 
   private void repopulateSearchResults() {
-    ImmutableList<SearchResult> results = searchEngine.getSearchResults(currentState());
-    searchResultsListModel.updateResults(currentState(), results);
-    routeCounters.forEach(c -> c.update(currentState()));
-    transitionVisualizer.ifOpen(t -> t.updateChecksList());
+    backgroundSearch.searchNow();
+  }
 
-    if (needsExpansion(searchResultsPane) || needsExpansion(routePane)) {
-      pack();
-    }
+  // For edits to bookmarks, hidden results or the route: lays out the displayed rows again right
+  // away, so that selected indices keep meaning what's on screen, then searches in the background.
+  private void refreshSearchResults() {
+    searchResultsListModel.refreshRows(currentState());
+    repopulateSearchResults();
+  }
+
+  private void searchSoon() {
+    backgroundSearch.searchSoon();
+  }
+
+  private void publishSearchResults(State state, ImmutableList<SearchResult> results) {
+    Performance.time("publishSearchResults", () -> {
+      searchResultsListModel.updateResults(state, results);
+      routeCounters.forEach(c -> c.update(currentState()));
+      transitionVisualizer.ifOpen(t -> t.updateChecksList());
+
+      if (needsExpansion(searchResultsPane) || needsExpansion(routePane)) {
+        pack();
+      }
+    });
     repaint();
   }
 
   private JList<String> createRouteList() {
     JList<String> routeList = new JList<>(routeListModel);
     Arrays.stream(routeList.getKeyListeners()).forEach(routeList::removeKeyListener);
-    routeList.addKeyListener(routeListKeyListener());
+    routeList.addKeyListener(Performance.timed("Route key", routeListKeyListener()));
     routeList.setCellRenderer(routeListCellRenderer());
 
     return routeList;
@@ -0,0 +1,94 @@
+package hollow.knight.gui;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import com.google.common.collect.ImmutableList;
+import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.State;
+import hollow.knight.logic.StateContext;
+
+/**
+ * Runs searches off the UI thread.
+ *
+ * <p>
+ * Every search request starts a new generation, which cancels any search still in flight. Only the
+ * results of the latest generation are ever published back to the UI thread.
+ */
+public final class BackgroundSearch {
+
+  @FunctionalInterface
+  public interface Publisher {
+    void publish(State state, ImmutableList<SearchResult> results);
+  }
+
+  // Bursts of filter changes (e.g. typing) within this window are coalesced into one search.
+  private static final int DEBOUNCE_MILLIS = 80;
+
+  private final SearchEngine searchEngine;
+  private final Supplier<State> state;
+  private final Publisher publisher;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "BackgroundSearch");
+    t.setDaemon(true);
+    return t;
+  });
+  private final AtomicLong generation = new AtomicLong();
+  private final Timer debounceTimer;
+
+  public BackgroundSearch(SearchEngine searchEngine, Supplier<State> state, Publisher publisher) {
+    this.searchEngine = searchEngine;
+    this.state = state;
+    this.publisher = publisher;
+
+    this.debounceTimer = new Timer(DEBOUNCE_MILLIS, e -> searchNow());
+    this.debounceTimer.setRepeats(false);
+  }
+
+  // Schedules a search after a short delay, restarting the delay if already scheduled.
+  public void searchSoon() {
+    generation.incrementAndGet();
+    debounceTimer.restart();
+  }
+
+  // Starts a search immediately. Must be called on the UI thread.
+  public void searchNow() {
+    debounceTimer.stop();
+
+    // Capture everything the search reads, so it never touches live UI state.
+    long gen = generation.incrementAndGet();
+    State snapshot = state.get().frozenCopy();
+    StateContext ctx = snapshot.ctx();
+    ImmutableList<ItemCheck> checks =
+        ctx.checks().allChecks().collect(ImmutableList.toImmutableList());
+    int checksVersion = ctx.checks().version();
+    ImmutableList<Integer> notchCosts = ctx.notchCosts().costs();
+    searchEngine.prepareSearch();
+
+    executor.execute(() -> {
+      ImmutableList<SearchResult> results;
+      long start = System.nanoTime();
+      try {
+        results = searchEngine.getSearchResults(snapshot, checks, checksVersion, notchCosts,
+            () -> generation.get() != gen);
+        Performance.record("Background search", System.nanoTime() - start);
+      } catch (CancellationException ex) {
+        return;
+      } catch (RuntimeException ex) {
+        SwingUtilities.invokeLater(() -> GuiUtil.showStackTrace(null, "Search failed", ex));
+        return;
+      }
+
+      SwingUtilities.invokeLater(() -> {
+        if (generation.get() == gen) {
+          publisher.publish(snapshot, results);
+        }
+      });
+    });
+  }
+}
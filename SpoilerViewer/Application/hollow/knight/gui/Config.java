@@ -28,6 +28,11 @@ public final class Config {
     return props.getOrDefault(prop, defaultValue);
   }
 
+  // The directory containing this config, for other per-user data.
+  public Path dir() {
+    return path.toAbsolutePath().getParent();
+  }
+
   public boolean isEmpty() {
     return props.isEmpty();
   }
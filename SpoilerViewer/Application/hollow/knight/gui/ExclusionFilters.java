@@ -7,6 +7,7 @@ import javax.swing.JPanel;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import hollow.knight.logic.RoomLabels;
+import hollow.knight.logic.State;
 import hollow.knight.logic.StateContext;
 
 public final class ExclusionFilters extends SearchResult.Filter {
@@ -29,6 +30,9 @@ public final class ExclusionFilters extends SearchResult.Filter {
   private final ImmutableList<ExclusionFilter> filters;
   private final JPanel filtersPanel;
 
+  private volatile State routedState;
+  private volatile ImmutableList<ExclusionFilter> searchExclusions = ImmutableList.of();
+
   private JCheckBox jcb(String txt, boolean isSelected) {
     JCheckBox out = new JCheckBox(txt);
     out.setSelected(isSelected);
@@ -38,14 +42,22 @@ public final class ExclusionFilters extends SearchResult.Filter {
   private ImmutableList<ExclusionFilter> createFilters(RoomLabels roomLabels) {
     return ImmutableList.of(
         ExclusionFilter.create(this, "UNROUTED",
-            r -> !routeListModel.finalState().isAcquired(r.itemCheck()), jcb("Unrouted", true)),
-        ExclusionFilter.create(this, "ROUTED",
-            r -> routeListModel.finalState().isAcquired(r.itemCheck()), jcb("Routed (R)", false)),
+            r -> !routedState.isAcquired(r.itemCheck()), jcb("Unrouted", true)),
+        ExclusionFilter.create(this, "ROUTED", r -> routedState.isAcquired(r.itemCheck()),
+            jcb("Routed (R)", false)),
         ExclusionFilter.create(this, "NON_VANILLA", r -> !r.itemCheck().vanilla(),
             jcb("Randomized", true)),
         ExclusionFilter.create(this, "VANILLA", r -> r.itemCheck().vanilla(),
             jcb("Vanilla (#)", false)),
-        ExclusionFilter.create(this, "SHOPS", r -> r.location().isShop(), jcb("Shops", true)));
+        ExclusionFilter.create(this, "SHOPS", r -> r.location().isShop(), jcb("Shops", true)),
+        ExclusionFilter.create(this, "IN_LOGIC",
+            r -> r.logicType() == SearchResult.LogicType.IN_LOGIC, jcb("In Logic", true)),
+        ExclusionFilter.create(this, "COST_ACCESSIBLE",
+            r -> r.logicType() == SearchResult.LogicType.COST_ACCESSIBLE,
+            jcb("Purchase Logic ($)", true)),
+        ExclusionFilter.create(this, "OUT_OF_LOGIC",
+            r -> r.logicType() == SearchResult.LogicType.OUT_OF_LOGIC,
+            jcb("Out of Logic (*)", false)));
   }
 
   public ExclusionFilters(RoomLabels roomLabels, RouteListModel routeListModel) {
@@ -56,14 +68,27 @@ public final class ExclusionFilters extends SearchResult.Filter {
     int numRows = (this.filters.size() + 1) / 2;
     this.filtersPanel.setLayout(new GridLayout(numRows, 2));
     this.filters.forEach(f -> filtersPanel.add(f.checkBox()));
+    prepareSearch();
   }
 
   public void addGuiToPanel(JPanel panel) {
     panel.add(filtersPanel);
   }
 
+  @Override
+  public void prepareSearch() {
+    routedState = routeListModel.finalState().deepCopy();
+    searchExclusions = filters.stream().filter(f -> !f.checkBox().isSelected())
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  @Override
+  protected boolean dependsOnState() {
+    return true;
+  }
+
   @Override
   public boolean accept(StateContext ctx, SearchResult result) {
-    return filters.stream().allMatch(f -> f.checkBox().isSelected() || !f.filter().test(result));
+    return searchExclusions.stream().noneMatch(f -> f.filter().test(result));
   }
 }
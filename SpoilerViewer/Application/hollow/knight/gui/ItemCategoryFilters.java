@@ -5,6 +5,7 @@ import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JPanel;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import hollow.knight.logic.StateContext;
 
 // Canonical filters with check box toggles.
@@ -14,6 +15,9 @@ public final class ItemCategoryFilters extends SearchResult.Filter {
   private final ImmutableMap<String, JCheckBox> filterBoxes;
   private final JCheckBox otherBox;
 
+  private volatile ImmutableSet<String> searchCategories = ImmutableSet.of();
+  private volatile boolean searchOther = false;
+
   private static ImmutableMap<String, ItemCategoryFilter> generateFilters() {
     return ImmutableMap.<String, ItemCategoryFilter>builder()
         .put("Movement",
@@ -65,21 +69,30 @@ public final class ItemCategoryFilters extends SearchResult.Filter {
     filtersPanel.add(createAllButton("No Items", false));
     filterBoxes.values().forEach(filtersPanel::add);
     filtersPanel.add(otherBox);
+    prepareSearch();
+  }
+
+  @Override
+  public void prepareSearch() {
+    searchCategories = filterBoxes.keySet().stream().filter(n -> filterBoxes.get(n).isSelected())
+        .collect(ImmutableSet.toImmutableSet());
+    searchOther = otherBox.isSelected();
   }
 
   @Override
   public boolean accept(StateContext ctx, SearchResult result) {
+    ImmutableSet<String> categories = searchCategories;
     boolean noneMatch = true;
     for (String name : filters.keySet()) {
       if (filters.get(name).accept(ctx, result.itemCheck())) {
         noneMatch = false;
-        if (filterBoxes.get(name).isSelected()) {
+        if (categories.contains(name)) {
           return true;
         }
       }
     }
 
-    return noneMatch && otherBox.isSelected();
+    return noneMatch && searchOther;
   }
 
   private JCheckBox createFilterBox(String name) {
@@ -22,8 +22,12 @@ import javax.swing.JSeparator;
 import javax.swing.JTextArea;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import hollow.knight.logic.ConditionParser;
+import hollow.knight.logic.ParseException;
+import hollow.knight.logic.State;
 
 // Free-floating UI for editing a single check.
 public final class LogicEditor extends JFrame implements SingletonWindow.Interface {
@@ -41,6 +45,9 @@ public final class LogicEditor extends JFrame implements SingletonWindow.Interfa
   private final JTextArea editText;
   private final JScrollPane editScrollPane;
 
+  // Locations whose in-logic status flipped with the last edit.
+  private final JTextArea changesText;
+
   public LogicEditor(Application application) {
     super("ICDL Logic Editor");
 
@@ -66,13 +73,20 @@ public final class LogicEditor extends JFrame implements SingletonWindow.Interfa
 
       @Override
       public void actionPerformed(ActionEvent arg0) {
-        saveLogic();
+        try {
+          saveLogic();
+        } catch (ParseException ex) {
+          GuiUtil.showStackTrace(LogicEditor.this, "Invalid logic", ex);
+        }
       }
     });
 
     this.editScrollPane = new JScrollPane(editText, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
         JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
 
+    this.changesText = new JTextArea(4, 0);
+    changesText.setEditable(false);
+
     JPanel contentPane = new JPanel();
     contentPane.setLayout(new BoxLayout(contentPane, BoxLayout.PAGE_AXIS));
     logicEditorSearchField.addToGui(contentPane);
@@ -83,6 +97,9 @@ public final class LogicEditor extends JFrame implements SingletonWindow.Interfa
     contentPane.add(editScrollPane);
     contentPane.add(new JSeparator());
     contentPane.add(createManageLogicPanel());
+    contentPane.add(new JSeparator());
+    contentPane.add(new JScrollPane(changesText, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
+        JScrollPane.HORIZONTAL_SCROLLBAR_NEVER));
     contentPane.setAlignmentX(Component.LEFT_ALIGNMENT);
     getContentPane().add(contentPane);
 
@@ -123,8 +140,7 @@ public final class LogicEditor extends JFrame implements SingletonWindow.Interfa
         return;
       }
 
-      application.ctx().logicEdits().addWaypoint(application.ctx(), resp);
-      repopulateLogicResults();
+      applyEdit(() -> application.ctx().logicEdits().addWaypoint(application.ctx(), resp));
       editLogic(resp);
     }));
     return button;
@@ -137,8 +153,7 @@ public final class LogicEditor extends JFrame implements SingletonWindow.Interfa
         return;
       }
 
-      application.ctx().logicEdits().clearLogic(logicForEdit);
-      repopulateLogicResults();
+      applyEdit(() -> application.ctx().logicEdits().clearLogic(application.ctx(), logicForEdit));
       editLogic(null);
     }));
     return button;
@@ -151,14 +166,39 @@ public final class LogicEditor extends JFrame implements SingletonWindow.Interfa
     return panel;
   }
 
-  private void saveLogic() {
+  private void saveLogic() throws ParseException {
     if (logicForEdit == null) {
       return;
     }
 
-    application.ctx().logicEdits().saveLogic(application.ctx(), logicForEdit,
-        editText.getText().trim());
+    String logic = editText.getText().trim();
+    ConditionParser.parse(logic);
+
+    applyEdit(
+        () -> application.ctx().logicEdits().saveLogic(application.ctx(), logicForEdit, logic));
+  }
+
+  private ImmutableSet<String> reachableLocations() {
+    State state = application.currentState();
+    return application.ctx().checks().allChecks().map(c -> c.location().name()).distinct()
+        .filter(state::isReachable).collect(ImmutableSet.toImmutableSet());
+  }
+
+  // Applies a logic edit, and shows which locations entered or left logic because of it.
+  private void applyEdit(Runnable edit) {
+    ImmutableSet<String> before = reachableLocations();
+    edit.run();
+    application.refreshEditedLogic();
     repopulateLogicResults();
+    ImmutableSet<String> after = reachableLocations();
+
+    StringBuilder sb = new StringBuilder();
+    Sets.difference(after, before).stream().sorted()
+        .forEach(n -> sb.append("+ ").append(n).append('\n'));
+    Sets.difference(before, after).stream().sorted()
+        .forEach(n -> sb.append("- ").append(n).append('\n'));
+    changesText.setText(sb.length() == 0 ? "No locations changed logic." : sb.toString().trim());
+    changesText.setCaretPosition(0);
   }
 
   private JButton saveLogicButton() {
@@ -191,9 +231,8 @@ public final class LogicEditor extends JFrame implements SingletonWindow.Interfa
   }
 
   public void repopulateLogicResults() {
-    ImmutableList<String> results = application.ctx().logicEdits().allLogicNames(application.ctx())
-        .stream().filter(logicEditorSearchField::accept).collect(ImmutableList.toImmutableList());
-    logicEditorListModel.updateResults(application.ctx(), results);
+    logicEditorListModel.updateResults(application.ctx(),
+        logicEditorSearchField.search(application.ctx()));
 
     if (needsExpansion(logicPane)) {
       pack();
@@ -29,12 +29,13 @@ public final class LogicEditorListModel implements ListModel<String> {
     return diffPrefix(ctx, name) + name;
   }
 
+  // Results are shown in the order given.
   public void updateResults(StateContext ctx, List<String> resultNames) {
     int oldSize = this.resultNames.size();
 
     this.resultNames.clear();
     this.resultDisplayNames.clear();
-    resultNames.stream().sorted().forEach(name -> {
+    resultNames.forEach(name -> {
       this.resultNames.add(name);
       this.resultDisplayNames.add(render(ctx, name));
     });
@@ -1,12 +1,15 @@
 package hollow.knight.gui;
 
 import java.awt.Container;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import com.google.common.collect.ImmutableList;
+import hollow.knight.logic.LogicEdits;
+import hollow.knight.logic.StateContext;
 import hollow.knight.logic.SynchronizedEntityManager;
 
 public final class LogicEditorSearchField {
@@ -32,16 +35,28 @@ public final class LogicEditorSearchField {
     listeners.forEach(Listener::textChanged);
   }
 
-  public boolean accept(String name) {
+  private static boolean matches(String name, List<String> terms) {
+    String lower = name.toLowerCase();
+    return terms.stream().allMatch(lower::contains);
+  }
+
+  // All logic names containing every search term, with those starting with the first term first.
+  public ImmutableList<String> search(StateContext ctx) {
+    LogicEdits edits = ctx.logicEdits();
     String t = textField.getText().trim().toLowerCase();
     if (t.isEmpty()) {
-      return true;
+      return edits.allLogicNames(ctx);
     }
 
-    List<String> tokens = new ArrayList<>();
-    tokens.add(name.toLowerCase());
-    return Arrays.stream(t.split("\\s"))
-        .allMatch(term -> tokens.stream().anyMatch(s -> s.contains(term)));
+    List<String> terms = Arrays.stream(t.split("\\s+")).collect(Collectors.toList());
+    String first = terms.get(0);
+    ImmutableList.Builder<String> results = ImmutableList.builder();
+    edits.logicNamesWithPrefix(ctx, first).stream().filter(n -> matches(n, terms))
+        .forEach(results::add);
+    edits.allLogicNames(ctx).stream()
+        .filter(n -> !n.regionMatches(true, 0, first, 0, first.length()) && matches(n, terms))
+        .forEach(results::add);
+    return results.build();
   }
 
   private JTextField createTextField() {
@@ -0,0 +1,243 @@
+package hollow.knight.gui;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.EventQueue;
+import java.awt.Font;
+import java.awt.Toolkit;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.swing.JOptionPane;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+
+/**
+ * Latency instrumentation for UI actions.
+ *
+ * <p>
+ * Named actions record their durations into log-linear histograms, reported as percentiles. Once
+ * installed, a watchdog also captures the UI thread's stack whenever a single event takes longer
+ * than STALL_MILLIS to dispatch.
+ */
+public final class Performance {
+
+  // Buckets are linear within each power of two, which bounds the relative error to ~6%.
+  static final class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    private static int bucket(long value) {
+      if (value < SUB_BUCKETS) {
+        return (int) Math.max(value, 0);
+      }
+
+      int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+      return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // The largest value which maps to 'bucket'.
+    private static long highestValue(int bucket) {
+      if (bucket < SUB_BUCKETS) {
+        return bucket;
+      }
+
+      int shift = bucket / SUB_BUCKETS - 1;
+      long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+      return ((top + 1) << shift) - 1;
+    }
+
+    void record(long value) {
+      counts.incrementAndGet(bucket(value));
+      total.incrementAndGet();
+      max.accumulateAndGet(value, Math::max);
+    }
+
+    long count() {
+      return total.get();
+    }
+
+    long max() {
+      return max.get();
+    }
+
+    long percentile(double percentile) {
+      long rank = (long) Math.ceil(percentile / 100 * total.get());
+      long seen = 0;
+      for (int i = 0; i < counts.length(); i++) {
+        seen += counts.get(i);
+        if (seen >= rank && seen > 0) {
+          return Math.min(highestValue(i), max.get());
+        }
+      }
+      return max.get();
+    }
+  }
+
+  private static final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+
+  // Runs 'task', recording its duration under 'action'.
+  public static void time(String action, Runnable task) {
+    long start = System.nanoTime();
+    try {
+      task.run();
+    } finally {
+      record(action, System.nanoTime() - start);
+    }
+  }
+
+  public static void record(String action, long nanos) {
+    histograms.computeIfAbsent(action, a -> new Histogram()).record(nanos);
+  }
+
+  // Times key presses on 'listener', per key.
+  public static KeyListener timed(String name, KeyListener listener) {
+    return new KeyAdapter() {
+      @Override
+      public void keyPressed(KeyEvent e) {
+        time(name + " [" + KeyEvent.getKeyText(e.getKeyCode()) + "]",
+            () -> listener.keyPressed(e));
+      }
+
+      @Override
+      public void keyReleased(KeyEvent e) {
+        listener.keyReleased(e);
+      }
+
+      @Override
+      public void keyTyped(KeyEvent e) {
+        listener.keyTyped(e);
+      }
+    };
+  }
+
+  private static final String DISPATCH_ACTION = "(UI event dispatch)";
+  private static final long STALL_MILLIS = 250;
+  private static final long WATCHDOG_MILLIS = 50;
+  private static final int MAX_STALLS = 20;
+  private static final int MAX_STALL_FRAMES = 40;
+
+  // Written by the UI thread, polled by the watchdog.
+  private static volatile Thread dispatchThread = null;
+  private static volatile long dispatchStart = 0;
+  private static volatile long dispatchSeq = 0;
+  private static volatile String dispatchEvent = "";
+
+  private static final Deque<String> stalls = new ArrayDeque<>();
+  private static boolean installed = false;
+
+  private static final class TimedEventQueue extends EventQueue {
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+      // Modal dialogs dispatch nested events; only time the innermost dispatch, and stop watching
+      // once any dispatch returns, so that an open dialog doesn't look like a stall.
+      long seq = ++dispatchSeq;
+      long start = System.nanoTime();
+      dispatchThread = Thread.currentThread();
+      dispatchEvent = event.getClass().getSimpleName();
+      dispatchStart = start;
+      try {
+        super.dispatchEvent(event);
+      } finally {
+        dispatchStart = 0;
+        if (dispatchSeq == seq) {
+          record(DISPATCH_ACTION, System.nanoTime() - start);
+        }
+      }
+    }
+  }
+
+  // Starts timing every UI event, and reporting stalls. Idempotent.
+  public static synchronized void install() {
+    if (installed) {
+      return;
+    }
+    installed = true;
+
+    Toolkit.getDefaultToolkit().getSystemEventQueue().push(new TimedEventQueue());
+    Thread watchdog = new Thread(Performance::watch, "UI Watchdog");
+    watchdog.setDaemon(true);
+    watchdog.start();
+  }
+
+  private static void watch() {
+    long reportedSeq = -1;
+    while (true) {
+      try {
+        Thread.sleep(WATCHDOG_MILLIS);
+      } catch (InterruptedException ex) {
+        return;
+      }
+
+      long start = dispatchStart;
+      long seq = dispatchSeq;
+      Thread thread = dispatchThread;
+      long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      if (start == 0 || thread == null || seq == reportedSeq || millis < STALL_MILLIS) {
+        continue;
+      }
+      reportedSeq = seq;
+
+      StringBuilder sb = new StringBuilder();
+      sb.append("UI thread stalled for ").append(millis).append("ms dispatching ")
+          .append(dispatchEvent).append(":\n");
+      StackTraceElement[] trace = thread.getStackTrace();
+      for (int i = 0; i < trace.length && i < MAX_STALL_FRAMES; i++) {
+        sb.append("    at ").append(trace[i]).append('\n');
+      }
+      synchronized (stalls) {
+        if (stalls.size() == MAX_STALLS) {
+          stalls.removeFirst();
+        }
+        stalls.addLast(sb.toString());
+      }
+    }
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.2f", nanos / 1_000_000.0);
+  }
+
+  public static String report() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%-48s %8s %10s %10s %10s %10s%n", "Action", "Count", "p50 (ms)",
+        "p90 (ms)", "p99 (ms)", "Max (ms)"));
+    histograms.forEach((action, h) -> sb.append(String.format("%-48s %8d %10s %10s %10s %10s%n",
+        action, h.count(), millis(h.percentile(50)), millis(h.percentile(90)),
+        millis(h.percentile(99)), millis(h.max()))));
+
+    synchronized (stalls) {
+      sb.append("\nRecent stalls (>").append(STALL_MILLIS).append("ms): ").append(stalls.size())
+          .append('\n');
+      stalls.descendingIterator().forEachRemaining(s -> sb.append('\n').append(s));
+    }
+    return sb.toString();
+  }
+
+  public static void showReport(Component parent) {
+    String report = report();
+    GuiUtil.copyToClipboard(report);
+
+    JTextArea text = new JTextArea(report);
+    text.setEditable(false);
+    text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    JScrollPane pane = new JScrollPane(text);
+    pane.setPreferredSize(new Dimension(900, 500));
+    JOptionPane.showMessageDialog(parent, pane, "Performance (Copied to Clipboard!)",
+        JOptionPane.PLAIN_MESSAGE);
+  }
+
+  private Performance() {}
+}
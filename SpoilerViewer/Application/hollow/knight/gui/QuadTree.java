@@ -0,0 +1,169 @@
+package hollow.knight.gui;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A spatial index over rectangles, for hit-testing and culling.
+ *
+ * <p>
+ * Each element is kept in the smallest node which fully contains it. The root grows as needed to
+ * fit elements anywhere on the plane.
+ */
+final class QuadTree<T> {
+  private static final int MAX_ELEMENTS = 8;
+  private static final int MAX_DEPTH = 16;
+  private static final double MIN_ROOT_SIZE = 256;
+
+  private final class Node {
+    private final double cx;
+    private final double cy;
+    private final double half;
+    private final int depth;
+
+    private final List<T> elements = new ArrayList<>();
+    private List<Node> children = null;
+
+    Node(double cx, double cy, double half, int depth) {
+      this.cx = cx;
+      this.cy = cy;
+      this.half = half;
+      this.depth = depth;
+    }
+
+    boolean contains(Rect r) {
+      return r.x1() >= cx - half && r.x2() <= cx + half && r.y1() >= cy - half
+          && r.y2() <= cy + half;
+    }
+
+    boolean intersects(Rect r) {
+      return r.x1() <= cx + half && r.x2() >= cx - half && r.y1() <= cy + half
+          && r.y2() >= cy - half;
+    }
+
+    // The child which fully contains 'r', if any.
+    Node childFor(Rect r) {
+      if (children == null) {
+        return null;
+      }
+
+      int index;
+      if (r.x2() <= cx) {
+        index = 0;
+      } else if (r.x1() >= cx) {
+        index = 1;
+      } else {
+        return null;
+      }
+      if (r.y1() >= cy) {
+        index += 2;
+      } else if (r.y2() > cy) {
+        return null;
+      }
+      return children.get(index);
+    }
+
+    void split() {
+      double q = half / 2;
+      children = new ArrayList<>(4);
+      children.add(new Node(cx - q, cy - q, q, depth + 1));
+      children.add(new Node(cx + q, cy - q, q, depth + 1));
+      children.add(new Node(cx - q, cy + q, q, depth + 1));
+      children.add(new Node(cx + q, cy + q, q, depth + 1));
+
+      List<T> remaining = new ArrayList<>();
+      for (T element : elements) {
+        Node child = childFor(bounds.get(element));
+        if (child != null) {
+          child.elements.add(element);
+        } else {
+          remaining.add(element);
+        }
+      }
+      elements.clear();
+      elements.addAll(remaining);
+    }
+
+    void insert(T element, Rect r) {
+      Node child = childFor(r);
+      if (child != null) {
+        child.insert(element, r);
+        return;
+      }
+
+      elements.add(element);
+      if (children == null && elements.size() > MAX_ELEMENTS && depth < MAX_DEPTH) {
+        split();
+      }
+    }
+
+    boolean remove(T element, Rect r) {
+      Node child = childFor(r);
+      return child != null ? child.remove(element, r) : elements.remove(element);
+    }
+
+    void query(Rect r, Consumer<T> consumer) {
+      for (T element : elements) {
+        if (bounds.get(element).intersects(r)) {
+          consumer.accept(element);
+        }
+      }
+      if (children != null) {
+        children.stream().filter(c -> c.intersects(r)).forEach(c -> c.query(r, consumer));
+      }
+    }
+  }
+
+  private final Map<T, Rect> bounds = new HashMap<>();
+  private Node root = null;
+
+  public QuadTree() {}
+
+  // Doubles the root towards 'r', keeping the old root as one of its quadrants.
+  private void grow(Rect r) {
+    boolean left = r.x1() < root.cx - root.half;
+    boolean up = r.y1() < root.cy - root.half;
+
+    Node oldRoot = root;
+    root = new Node(oldRoot.cx + (left ? -oldRoot.half : oldRoot.half),
+        oldRoot.cy + (up ? -oldRoot.half : oldRoot.half), oldRoot.half * 2, 0);
+    root.split();
+    root.children.set((left ? 1 : 0) + (up ? 2 : 0), oldRoot);
+  }
+
+  public void insert(T element, Rect r) {
+    remove(element);
+    bounds.put(element, r);
+
+    if (root == null) {
+      double size = Math.max(MIN_ROOT_SIZE, Math.max(r.width(), r.height()));
+      root = new Node(r.center().x(), r.center().y(), size, 0);
+    }
+    while (!root.contains(r)) {
+      grow(r);
+    }
+    root.insert(element, r);
+  }
+
+  public void remove(T element) {
+    Rect r = bounds.remove(element);
+    if (r != null) {
+      root.remove(element, r);
+    }
+  }
+
+  public void clear() {
+    bounds.clear();
+    root = null;
+  }
+
+  // Calls 'consumer' on every element whose bounds intersect 'r', in no particular order.
+  public void query(Rect r, Consumer<T> consumer) {
+    if (root != null) {
+      root.query(r, consumer);
+    }
+  }
+}
@@ -17,6 +17,7 @@ import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import hollow.knight.logic.RoomLabels;
 import hollow.knight.logic.StateContext;
 
@@ -24,6 +25,9 @@ public final class RoomFilters extends SearchResult.Filter {
 
   private RoomLabels.Type activeType = RoomLabels.Type.MAP;
 
+  private volatile RoomLabels.Type searchType = RoomLabels.Type.MAP;
+  private volatile ImmutableSet<String> searchLabels = ImmutableSet.of();
+
   private final JButton allAreas = new JButton("All Areas");
   private final JTabbedPane tabPane = new JTabbedPane();
 
@@ -37,6 +41,7 @@ public final class RoomFilters extends SearchResult.Filter {
 
     this.allAreas.addActionListener(GuiUtil.newActionListener(null, this::selectAllAreas));
     this.tabPane.addChangeListener(tabChangedListener());
+    prepareSearch();
   }
 
   private ImmutableMap<RoomLabels.Type, JList<String>> createSelectionLists(RoomLabels roomLabels) {
@@ -89,12 +94,16 @@ public final class RoomFilters extends SearchResult.Filter {
     panel.add(tabPane);
   }
 
+  @Override
+  public void prepareSearch() {
+    searchType = activeType;
+    searchLabels = ImmutableSet.copyOf(selectionLists.get(activeType).getSelectedValuesList());
+  }
+
   @Override
   public boolean accept(StateContext ctx, SearchResult result) {
     String scene = result.location().scene();
-    String label = ctx.roomLabels().get(scene, activeType);
-    JList<String> list = selectionLists.get(activeType);
-    return list.getSelectedValuesList().contains(label);
+    return searchLabels.contains(ctx.roomLabels().get(scene, searchType));
   }
 
 }
@@ -41,6 +41,11 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
   private State finalState; // All checks
   private int insertionPoint = 0; // New elements go @ this index
 
+  // checkpoints[j] has the first j * checkpointInterval checks of the route acquired, so any prefix
+  // state is at most checkpointInterval acquisitions away. Truncated from the first edited index.
+  private final List<State> checkpoints = new ArrayList<>();
+  private int checkpointInterval = 1;
+
   private final List<ItemCheck> route = new ArrayList<>();
   private final List<String> resultStrings = new ArrayList<>();
 
@@ -109,6 +114,11 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
     return route.indexOf(check);
   }
 
+  // No checks acquired. Do not modify.
+  public State initialState() {
+    return initialState;
+  }
+
   public State currentState() {
     return currentState;
   }
@@ -117,6 +127,48 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
     return finalState;
   }
 
+  private static int checkpointInterval(int routeSize) {
+    return Math.max(1, (int) Math.sqrt(routeSize));
+  }
+
+  private void resetCheckpoints() {
+    checkpointInterval = checkpointInterval(route.size());
+    checkpoints.clear();
+    checkpoints.add(initialState);
+  }
+
+  // Discards all checkpoints which include route[index] or later.
+  private void invalidateCheckpoints(int index) {
+    int keep = index / checkpointInterval + 1;
+    if (checkpoints.size() > keep) {
+      checkpoints.subList(keep, checkpoints.size()).clear();
+    }
+  }
+
+  // Computes a new State with route[0..index] acquired, starting from the nearest checkpoint.
+  private State computeState(int index) {
+    if (checkpoints.isEmpty() || checkpointInterval != checkpointInterval(route.size())) {
+      resetCheckpoints();
+    }
+
+    int count = index + 1;
+    int j = count / checkpointInterval;
+    while (checkpoints.size() <= j) {
+      int from = (checkpoints.size() - 1) * checkpointInterval;
+      State next = checkpoints.get(checkpoints.size() - 1).deepCopy();
+      for (int i = from; i < from + checkpointInterval; i++) {
+        next.acquireCheck(route.get(i));
+      }
+      checkpoints.add(next);
+    }
+
+    State state = checkpoints.get(j).deepCopy();
+    for (int i = j * checkpointInterval; i < count; i++) {
+      state.acquireCheck(route.get(i));
+    }
+    return state;
+  }
+
   private State getState(int index) {
     if (index == -1) {
       return initialState;
@@ -124,20 +176,8 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
       return currentState;
     } else if (index == route.size() - 1) {
       return finalState;
-    } else if (index < insertionPoint) {
-      State newState = initialState.deepCopy();
-      for (int i = 0; i <= index; i++) {
-        newState.acquireCheck(route.get(i));
-      }
-
-      return newState;
     } else {
-      State newState = currentState.deepCopy();
-      for (int i = insertionPoint; i <= index; i++) {
-        newState.acquireCheck(route.get(i));
-      }
-
-      return newState;
+      return computeState(index);
     }
   }
 
@@ -158,11 +198,7 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
       return;
     }
     insertionPoint = newInsertionPoint;
-
-    currentState = initialState.deepCopy();
-    for (int i = 0; i < insertionPoint; i++) {
-      currentState.acquireCheck(route.get(i));
-    }
+    currentState = computeState(insertionPoint - 1);
 
     ListDataEvent e = new ListDataEvent(this, ListDataEvent.CONTENTS_CHANGED, 0, getSize());
     listeners.forEach(l -> l.contentsChanged(e));
@@ -176,6 +212,7 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
     currentState.acquireCheck(check);
 
     this.route.add(insertionPoint, check);
+    invalidateCheckpoints(insertionPoint);
     this.resultStrings.add(insertionPoint,
         SearchResult.create(check, currentState).render(transitionData, ctx.darkness()));
     ++insertionPoint;
@@ -185,7 +222,7 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
       SearchResult newResult = SearchResult.create(route.get(i), finalState);
       resultStrings.set(i, newResult.render(transitionData, ctx.darkness()));
 
-      finalState.acquireCheck(check);
+      finalState.acquireCheck(route.get(i));
     }
 
     ListDataEvent e1 =
@@ -213,6 +250,7 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
 
     route.set(before, b);
     route.set(after, a);
+    invalidateCheckpoints(before);
     resultStrings.set(before,
         SearchResult.create(b, newState1).render(transitionData, ctx.darkness()));
     resultStrings.set(after,
@@ -243,13 +281,11 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
 
     route.remove(route.size() - 1);
     resultStrings.remove(resultStrings.size() - 1);
+    invalidateCheckpoints(index);
 
     if (index < insertionPoint) {
       --insertionPoint;
-      currentState = initialState.deepCopy();
-      for (int i = 0; i < insertionPoint; i++) {
-        currentState.acquireCheck(route.get(i));
-      }
+      currentState = computeState(insertionPoint - 1);
     }
 
     ListDataEvent e1 = new ListDataEvent(this, ListDataEvent.INTERVAL_REMOVED, index, index + 1);
@@ -267,6 +303,7 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
 
     finalState = getState(index - 1).deepCopy();
     route.set(index, replacement);
+    invalidateCheckpoints(index);
     for (int i = index; i < getSize(); i++) {
       ItemCheck check = route.get(i);
       resultStrings.set(i,
@@ -276,10 +313,7 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
     }
 
     if (index < insertionPoint) {
-      currentState = initialState.deepCopy();
-      for (int i = 0; i < insertionPoint; i++) {
-        currentState.acquireCheck(route.get(i));
-      }
+      currentState = computeState(insertionPoint - 1);
     }
 
     ListDataEvent e = new ListDataEvent(this, ListDataEvent.CONTENTS_CHANGED, index, getSize());
@@ -288,9 +322,24 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
 
   public void refreshLogic() {
     initialState = newInitialState();
+    replayRoute();
+  }
+
+  // Like refreshLogic(), but keeps the initial state, which then only recomputes the logic which
+  // depends on the edits. Only valid if logic edits are the only change. The route is still
+  // replayed step by step, since each step's rendering depends on the State before it.
+  public void refreshEditedLogic() {
+    replayRoute();
+  }
+
+  private void replayRoute() {
     finalState = initialState.deepCopy();
+    resetCheckpoints();
     for (int i = 0; i < getSize(); i++) {
       ItemCheck check = route.get(i);
+      if (i > 0 && i % checkpointInterval == 0) {
+        checkpoints.add(finalState.deepCopy());
+      }
       resultStrings.set(i,
           SearchResult.create(check, finalState).render(transitionData, ctx.darkness()));
       if (i == insertionPoint) {
@@ -378,6 +427,7 @@ public final class RouteListModel implements ItemChecks.Listener, ListModel<Stri
     this.currentState = this.initialState.deepCopy();
     this.finalState = this.initialState.deepCopy();
     this.insertionPoint = 0;
+    this.checkpoints.clear();
 
     this.route.clear();
     this.resultStrings.clear();
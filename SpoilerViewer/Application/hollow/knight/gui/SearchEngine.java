@@ -1,10 +1,20 @@
 package hollow.knight.gui;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import com.google.auto.value.AutoValue;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.ItemChecks;
 import hollow.knight.logic.RoomLabels;
 import hollow.knight.logic.State;
 import hollow.knight.logic.StateContext;
@@ -25,26 +35,94 @@ public final class SearchEngine {
     return resultFilters.stream().allMatch(f -> f.accept(ctx, result));
   }
 
-  private int sortResults(SearchResult r1, SearchResult r2) {
-    return ComparisonChain.start()
-        .compare(roomLabels.get(r1.location().scene(), RoomLabels.Type.MAP),
-            roomLabels.get(r2.location().scene(), RoomLabels.Type.MAP))
-        .compare(r1.item().displayName(transitionData).toLowerCase(),
-            r2.item().displayName(transitionData).toLowerCase())
-        .compare(r1.location().name(), r2.location().name()).result();
+  @AutoValue
+  abstract static class SortKey implements Comparable<SortKey> {
+    abstract String mapArea();
+
+    abstract String itemName();
+
+    abstract String locationName();
+
+    @Override
+    public final int compareTo(SortKey o) {
+      return ComparisonChain.start().compare(mapArea(), o.mapArea())
+          .compare(itemName(), o.itemName()).compare(locationName(), o.locationName()).result();
+    }
+
+    static SortKey create(String mapArea, String itemName, String locationName) {
+      return new AutoValue_SearchEngine_SortKey(mapArea, itemName, locationName);
+    }
+  }
+
+  // All checks in display order, cached by ItemChecks version. Sort keys are kept per check so a
+  // change only computes keys for the new checks. Only accessed from the search thread.
+  private final Map<ItemCheck, SortKey> sortKeys = new HashMap<>();
+  private ItemChecks sortedChecksSource = null;
+  private int sortedChecksVersion = -1;
+  private ImmutableList<ItemCheck> sortedChecks = ImmutableList.of();
+
+  private SortKey sortKey(ItemCheck check) {
+    return sortKeys.computeIfAbsent(check,
+        c -> SortKey.create(roomLabels.get(c.location().scene(), RoomLabels.Type.MAP),
+            c.item().displayName(transitionData).toLowerCase(), c.location().name()));
+  }
+
+  private ImmutableList<ItemCheck> sortedChecks(ItemChecks source, Collection<ItemCheck> checks,
+      int checksVersion) {
+    if (source == sortedChecksSource && checksVersion == sortedChecksVersion) {
+      return sortedChecks;
+    }
+
+    sortKeys.keySet().retainAll(ImmutableSet.copyOf(checks));
+    sortedChecks = checks.stream().sorted(Comparator.comparing(this::sortKey))
+        .collect(ImmutableList.toImmutableList());
+    sortedChecksSource = source;
+    sortedChecksVersion = checksVersion;
+    return sortedChecks;
+  }
+
+  // Snapshots filter GUI state. Must be called on the UI thread before getSearchResults().
+  public void prepareSearch() {
+    resultFilters.forEach(SearchResult.Filter::prepare);
   }
 
-  public ImmutableList<SearchResult> getSearchResults(State state) {
-    // Step 1: Collect all results.
-    List<SearchResult> results = new ArrayList<>();
-    state.ctx().checks().allChecks().forEach(c -> results.add(SearchResult.create(c, state)));
+  // Safe to call from a background thread, given a frozen 'state', and 'checks' and 'notchCosts'
+  // captured on the UI thread. 'checksVersion' is the ItemChecks version 'checks' was taken at.
+  // Throws CancellationException as soon as 'cancelled' returns true.
+  public ImmutableList<SearchResult> getSearchResults(State state, Collection<ItemCheck> checks,
+      int checksVersion, ImmutableList<Integer> notchCosts, BooleanSupplier cancelled) {
+    // Step 1: Collect all results, in display order.
+    List<SearchResult> all = new ArrayList<>(checks.size());
+    for (ItemCheck check : sortedChecks(state.ctx().checks(), checks, checksVersion)) {
+      if (cancelled.getAsBoolean()) {
+        throw new CancellationException();
+      }
+      all.add(SearchResult.create(check, state, notchCosts));
+    }
 
-    // Step 2: Apply filters.
-    results.removeIf(r -> !accept(state.ctx(), r));
+    // Step 2: Intersect the accepted ids of every filter. Filters which haven't changed since the
+    // last search reuse their previous ids.
+    BitSet accepted = null;
+    for (SearchResult.Filter filter : resultFilters) {
+      BitSet ids = filter.acceptedIds(state.ctx(), all, checksVersion);
+      if (accepted == null) {
+        accepted = (BitSet) ids.clone();
+      } else {
+        accepted.and(ids);
+      }
 
-    // Step 3: Sort results.
-    Collections.sort(results, this::sortResults);
+      if (cancelled.getAsBoolean()) {
+        throw new CancellationException();
+      }
+    }
 
-    return ImmutableList.copyOf(results);
+    // Step 3: Walk the presorted results.
+    ImmutableList.Builder<SearchResult> results = ImmutableList.builder();
+    for (SearchResult r : all) {
+      if (accepted == null || accepted.get(r.itemCheck().id().id())) {
+        results.add(r);
+      }
+    }
+    return results.build();
   }
 }
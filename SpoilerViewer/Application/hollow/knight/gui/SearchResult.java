@@ -1,13 +1,18 @@
 package hollow.knight.gui;
 
+import java.util.BitSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.IntUnaryOperator;
 import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
 import hollow.knight.logic.CheckId;
 import hollow.knight.logic.Costs;
 import hollow.knight.logic.DarknessOverrides;
 import hollow.knight.logic.DarknessOverrides.Darkness;
 import hollow.knight.logic.Item;
 import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.ItemChecks;
 import hollow.knight.logic.Location;
 import hollow.knight.logic.State;
 import hollow.knight.logic.StateContext;
@@ -23,9 +28,63 @@ public abstract class SearchResult {
     private final SynchronizedEntityManager<FilterChangedListener> listeners =
         new SynchronizedEntityManager<>();
 
+    // Number of filterChanged() calls, as of the last prepareSearch().
+    private int changes = 0;
+    private volatile int preparedChanges = -1;
+
+    // Ids of accepted checks from the last search, and what they were computed against.
+    private BitSet cachedIds = null;
+    private int cachedChanges = -1;
+    private ItemChecks cachedChecks = null;
+    private int cachedChecksVersion = -1;
+
+    // May be called from a background thread, so must only read state captured by prepareSearch().
     public abstract boolean accept(StateContext ctx, SearchResult result);
 
+    // Called on the UI thread before each search, to snapshot any GUI state accept() depends on.
+    public void prepareSearch() {}
+
+    // Called on the search thread before accept(), for expensive work on the snapshot taken by
+    // prepareSearch().
+    protected void beginSearch() {}
+
+    // Filters which read the route State, directly or through SearchResult.logicType(), must return
+    // true here so their results are never cached across searches.
+    protected boolean dependsOnState() {
+      return false;
+    }
+
+    final void prepare() {
+      prepareSearch();
+      preparedChanges = changes;
+    }
+
+    // Returns the ids of all accepted checks among 'results'. Reuses the previous answer if neither
+    // this filter nor the checks have changed since.
+    final BitSet acceptedIds(StateContext ctx, List<SearchResult> results, int checksVersion) {
+      int prepared = preparedChanges;
+      if (cachedIds != null && !dependsOnState() && cachedChanges == prepared
+          && cachedChecks == ctx.checks() && cachedChecksVersion == checksVersion) {
+        return cachedIds;
+      }
+
+      beginSearch();
+      BitSet ids = new BitSet();
+      for (SearchResult r : results) {
+        if (accept(ctx, r)) {
+          ids.set(r.itemCheck().id().id());
+        }
+      }
+
+      cachedIds = ids;
+      cachedChanges = prepared;
+      cachedChecks = ctx.checks();
+      cachedChecksVersion = checksVersion;
+      return ids;
+    }
+
     protected final void filterChanged() {
+      ++changes;
       listeners.forEach(FilterChangedListener::filterChanged);
     }
 
@@ -39,7 +98,27 @@ public abstract class SearchResult {
   }
 
   public static enum LogicType {
-    IN_LOGIC, COST_ACCESSIBLE, OUT_OF_LOGIC;
+    IN_LOGIC(""), COST_ACCESSIBLE("$"), OUT_OF_LOGIC("*");
+
+    private final String prefix;
+
+    LogicType(String prefix) {
+      this.prefix = prefix;
+    }
+
+    public String prefix() {
+      return prefix;
+    }
+
+    public static LogicType of(ItemCheck check, State state) {
+      if (state.isInLogic(check)) {
+        return IN_LOGIC;
+      } else if (state.isCostAccessible(check)) {
+        return COST_ACCESSIBLE;
+      } else {
+        return OUT_OF_LOGIC;
+      }
+    }
   }
 
   public abstract ItemCheck itemCheck();
@@ -64,10 +143,13 @@ public abstract class SearchResult {
     return itemCheck().vanilla();
   }
 
+  public abstract LogicType logicType();
+
   public abstract Optional<Integer> notchCost();
 
   public final String render(TransitionData transitionData, DarknessOverrides darkness) {
     StringBuilder sb = new StringBuilder();
+    sb.append(logicType().prefix());
     if (vanilla()) {
       sb.append('#');
     }
@@ -98,12 +180,23 @@ public abstract class SearchResult {
   }
 
   public static SearchResult create(ItemCheck itemCheck, State state) {
+    return create(itemCheck, state, state.ctx().notchCosts()::notchCost);
+  }
+
+  // For use off the UI thread, with notch costs captured beforehand.
+  public static SearchResult create(ItemCheck itemCheck, State state,
+      ImmutableList<Integer> notchCosts) {
+    return create(itemCheck, state, charmId -> notchCosts.get(charmId - 1));
+  }
+
+  private static SearchResult create(ItemCheck itemCheck, State state,
+      IntUnaryOperator notchCosts) {
     Optional<Integer> notchCost = Optional.empty();
     Integer charmId = state.ctx().charmIds().charmId(itemCheck.item().term());
     if (charmId != null) {
-      notchCost = Optional.of(state.ctx().notchCosts().notchCost(charmId));
+      notchCost = Optional.of(notchCosts.applyAsInt(charmId));
     }
 
-    return new AutoValue_SearchResult(itemCheck, notchCost);
+    return new AutoValue_SearchResult(itemCheck, LogicType.of(itemCheck, state), notchCost);
   }
 }
@@ -4,14 +4,20 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Font;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import javax.swing.ListModel;
 import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
+import com.google.auto.value.AutoValue;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -37,7 +43,40 @@ public final class SearchResultsListModel
   private final List<ItemCheck> bookmarks = new ArrayList<>();
   private final List<SearchResult> results = new ArrayList<>();
   private final List<SearchResult> hiddenResults = new ArrayList<>();
-  private final List<String> resultStrings = new ArrayList<>();
+  // The latest search's results, before bookmarked and hidden checks are split out.
+  private List<SearchResult> searchResults = new ArrayList<>();
+
+  // Everything needed to render a row. Null for separators.
+  @AutoValue
+  abstract static class RowKey {
+    abstract SearchResult result();
+
+    abstract boolean routed();
+
+    abstract boolean rawTransitions();
+
+    abstract DarknessOverrides darkness();
+
+    static RowKey create(SearchResult result, boolean routed, boolean rawTransitions,
+        DarknessOverrides darkness) {
+      return new AutoValue_SearchResultsListModel_RowKey(result, routed, rawTransitions, darkness);
+    }
+  }
+
+  private List<RowKey> rows = new ArrayList<>();
+  private final Map<ItemCheck, Integer> rowIndices = new HashMap<>();
+
+  // Rows are rendered on demand, keeping only recently displayed strings.
+  private static final int MAX_CACHED_ROWS = 1024;
+  private final Map<RowKey, String> renderCache =
+      new LinkedHashMap<RowKey, String>(MAX_CACHED_ROWS, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<RowKey, String> eldest) {
+          return size() > MAX_CACHED_ROWS;
+        }
+      };
 
   private static final String SEPARATOR = "----------------------------------------";
 
@@ -65,34 +104,61 @@ public final class SearchResultsListModel
   }
 
   public int indexOfSearchResult(ItemCheck check) {
-    if (bookmarksSet.contains(check)) {
-      return bookmarks.indexOf(check);
-    }
-
-    for (int i = 0; i < results.size(); i++) {
-      if (results.get(i).itemCheck().equals(check)) {
-        return bookmarks.size() + 1 + i;
-      }
-    }
+    return rowIndices.getOrDefault(check, -1);
+  }
 
-    return -1;
+  private String render(RowKey key) {
+    return (key.routed() ? "(R) " : "") + key.result().render(
+        key.rawTransitions() ? TransitionData.empty() : transitionData, key.darkness());
   }
 
-  private String render(SearchResult result) {
-    return (isRouted.test(result.itemCheck()) ? "(R) " : "") + result
-        .render(showRawTransitions.get() ? TransitionData.empty() : transitionData, darkness.get());
+  private void fireDiff(List<RowKey> oldRows, List<RowKey> newRows) {
+    int oldSize = oldRows.size();
+    int newSize = newRows.size();
+
+    int prefix = 0;
+    while (prefix < oldSize && prefix < newSize
+        && Objects.equals(oldRows.get(prefix), newRows.get(prefix))) {
+      ++prefix;
+    }
+    int suffix = 0;
+    while (suffix < oldSize - prefix && suffix < newSize - prefix
+        && Objects.equals(oldRows.get(oldSize - 1 - suffix), newRows.get(newSize - 1 - suffix))) {
+      ++suffix;
+    }
+
+    int oldMid = oldSize - prefix - suffix;
+    int newMid = newSize - prefix - suffix;
+    int common = Math.min(oldMid, newMid);
+    if (common > 0) {
+      ListDataEvent e = new ListDataEvent(this, ListDataEvent.CONTENTS_CHANGED, prefix,
+          prefix + common - 1);
+      listeners.forEach(l -> l.contentsChanged(e));
+    }
+    if (newMid > common) {
+      ListDataEvent e = new ListDataEvent(this, ListDataEvent.INTERVAL_ADDED, prefix + common,
+          prefix + newMid - 1);
+      listeners.forEach(l -> l.intervalAdded(e));
+    } else if (oldMid > common) {
+      ListDataEvent e = new ListDataEvent(this, ListDataEvent.INTERVAL_REMOVED, prefix + common,
+          prefix + oldMid - 1);
+      listeners.forEach(l -> l.intervalRemoved(e));
+    }
   }
 
   public void updateResults(State state, List<SearchResult> newResults) {
+    searchResults = new ArrayList<>(newResults);
     matchingResults.clear();
     newResults.forEach(r -> matchingResults.add(r.itemCheck()));
+    refreshRows(state);
+  }
 
-    int oldSize = this.resultStrings.size();
-
+  // Lays out the latest search results again, after bookmarks, hidden results or routed checks
+  // change, so that row indices match the new layout before the next search publishes.
+  public void refreshRows(State state) {
     results.clear();
-    resultStrings.clear();
     hiddenResults.clear();
-    for (SearchResult r : newResults) {
+    for (SearchResult r : searchResults) {
       if (hiddenResultsSet.contains(r.itemCheck())) {
         hiddenResults.add(r);
       } else if (!bookmarksSet.contains(r.itemCheck())) {
@@ -100,17 +166,23 @@ public final class SearchResultsListModel
       }
     }
 
-    bookmarks.forEach(b -> resultStrings.add(render(SearchResult.create(b, state))));
-    resultStrings.add(SEPARATOR);
-    results.forEach(r -> resultStrings.add(render(r)));
-    resultStrings.add(SEPARATOR);
-    hiddenResults.forEach(r -> resultStrings.add(render(r)));
-
-    int newSize = resultStrings.size();
-
-    ListDataEvent e =
-        new ListDataEvent(this, ListDataEvent.CONTENTS_CHANGED, 0, Math.max(oldSize, newSize));
-    listeners.forEach(l -> l.contentsChanged(e));
+    boolean raw = showRawTransitions.get();
+    DarknessOverrides darkness = this.darkness.get();
+    List<RowKey> newRows = new ArrayList<>(bookmarks.size() + searchResults.size() + 2);
+    rowIndices.clear();
+    Consumer<SearchResult> addRow = r -> {
+      rowIndices.putIfAbsent(r.itemCheck(), newRows.size());
+      newRows.add(RowKey.create(r, isRouted.test(r.itemCheck()), raw, darkness));
+    };
+    bookmarks.forEach(b -> addRow.accept(SearchResult.create(b, state)));
+    newRows.add(null);
+    results.forEach(addRow);
+    newRows.add(null);
+    hiddenResults.forEach(addRow);
+
+    List<RowKey> oldRows = rows;
+    rows = newRows;
+    fireDiff(oldRows, newRows);
   }
 
   public void removeBookmark(ItemCheck check) {
@@ -119,56 +191,18 @@ public final class SearchResultsListModel
     }
   }
 
+  // Indices are resolved through the displayed rows, which may lag behind edits until refreshed.
   public ItemCheck getCheck(int index) {
-    if (index < 0) {
-      return null;
-    }
-
-    if (index < bookmarks.size()) {
-      return bookmarks.get(index);
-    }
-
-    index -= bookmarks.size() + 1;
-    if (index < 0) {
-      return null;
-    }
-
-    if (index < results.size()) {
-      return results.get(index).itemCheck();
-    }
-
-    index -= results.size() + 1;
-    if (index < 0 || index >= hiddenResults.size()) {
-      return null;
-    }
-
-    return hiddenResults.get(index).itemCheck();
+    SearchResult result = getResult(index);
+    return result == null ? null : result.itemCheck();
   }
 
-  public SearchResult getResult(State state, int index) {
-    if (index < 0) {
-      return null;
-    }
-
-    if (index < bookmarks.size()) {
-      return SearchResult.create(bookmarks.get(index), state);
-    }
-
-    index -= bookmarks.size() + 1;
-    if (index < 0) {
+  private SearchResult getResult(int index) {
+    if (index < 0 || index >= rows.size() || rows.get(index) == null) {
       return null;
     }
 
-    if (index < results.size()) {
-      return results.get(index);
-    }
-
-    index -= results.size() + 1;
-    if (index < 0 || index >= hiddenResults.size()) {
-      return null;
-    }
-
-    return hiddenResults.get(index);
+    return rows.get(index).result();
   }
 
   private void brighten(Component c) {
@@ -176,7 +210,7 @@ public final class SearchResultsListModel
   }
 
   public void adjustComponentStyle(Component c, State state, SearchEngine engine, int index) {
-    SearchResult s = getResult(state, index);
+    SearchResult s = getResult(index);
     if (s == null) {
       return;
     }
@@ -207,8 +241,9 @@ public final class SearchResultsListModel
     }
   }
 
-  public void moveBookmark(int index, boolean up) {
-    if (index >= bookmarks.size()) {
+  public void moveBookmark(int row, boolean up) {
+    int index = bookmarks.indexOf(getCheck(row));
+    if (index == -1) {
       return;
     }
 
@@ -223,16 +258,18 @@ public final class SearchResultsListModel
     bookmarks.set(otherIndex, a);
   }
 
-  public void deleteBookmark(State state, int index) {
-    if (index >= bookmarks.size()) {
-      return;
+  public void deleteBookmark(State state, int row) {
+    ItemCheck check = getCheck(row);
+    if (bookmarksSet.remove(check)) {
+      bookmarks.remove(check);
     }
-
-    bookmarksSet.remove(bookmarks.remove(index));
   }
 
   public void hideResult(int index) {
     ItemCheck check = getCheck(index);
+    if (check == null) {
+      return;
+    }
 
     hiddenResultsSet.add(check);
     if (bookmarksSet.remove(check)) {
@@ -253,6 +290,9 @@ public final class SearchResultsListModel
 
   @Override
   public void checkRemoved(ItemCheck check) {
+    if (matchingResults.remove(check)) {
+      searchResults.removeIf(r -> r.itemCheck() == check);
+    }
     if (bookmarksSet.remove(check)) {
       bookmarks.remove(check);
     } else {
@@ -321,12 +361,13 @@ public final class SearchResultsListModel
 
   @Override
   public String getElementAt(int index) {
-    return resultStrings.get(index);
+    RowKey key = rows.get(index);
+    return key == null ? SEPARATOR : renderCache.computeIfAbsent(key, this::render);
   }
 
   @Override
   public int getSize() {
-    return resultStrings.size();
+    return rows.size();
   }
 
   @Override
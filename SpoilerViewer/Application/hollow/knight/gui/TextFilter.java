@@ -1,8 +1,8 @@
 package hollow.knight.gui;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.BitSet;
+import java.util.function.Supplier;
 import javax.swing.ButtonGroup;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -28,14 +28,27 @@ public final class TextFilter extends SearchResult.Filter {
   private final JPanel searchPanel = new JPanel();
   private final JPanel modePanel = new JPanel();
 
-  private final TransitionData transitionData;
-  private final RoomLabels roomLabels;
   private final JTextField textField;
   private Mode mode = Mode.BOTH;
 
-  public TextFilter(TransitionData transitionData, RoomLabels roomLabels) {
-    this.transitionData = transitionData;
-    this.roomLabels = roomLabels;
+  private final Supplier<StateContext> ctx;
+  private final TextIndex index;
+
+  // Snapshotted on the UI thread by prepareSearch().
+  private volatile String preparedText = "";
+  private volatile Mode preparedMode = Mode.BOTH;
+
+  // Ids of checks matching the prepared search text, or null if there is no search text. Computed on
+  // the search thread, from the text and mode below, which only it accesses.
+  private volatile BitSet searchMatches = null;
+  private String matchesText = "";
+  private Mode matchesMode = Mode.BOTH;
+  private int matchesVersion = -1;
+
+  public TextFilter(TransitionData transitionData, RoomLabels roomLabels,
+      Supplier<StateContext> ctx) {
+    this.ctx = ctx;
+    this.index = new TextIndex(transitionData, roomLabels);
 
     searchPanel.add(new JLabel("Search:"));
     this.textField = createTextField();
@@ -63,38 +76,41 @@ public final class TextFilter extends SearchResult.Filter {
   }
 
   @Override
-  public boolean accept(StateContext ctx, SearchResult result) {
-    String t = textField.getText().trim().toLowerCase();
-    if (t.isEmpty()) {
-      return true;
+  public void prepareSearch() {
+    preparedText = textField.getText().trim().toLowerCase();
+    preparedMode = mode;
+    index.sync(ctx.get().checks());
+  }
+
+  @Override
+  protected void beginSearch() {
+    String text = preparedText;
+    Mode mode = preparedMode;
+    int version = index.version();
+    if (text.equals(matchesText) && mode == matchesMode && version == matchesVersion) {
+      return;
     }
 
-    List<String> aliases = getAliases(result);
-    return Arrays.stream(t.split("\\s"))
-        .allMatch(term -> aliases.stream().anyMatch(s -> s.contains(term)));
+    matchesText = text;
+    matchesMode = mode;
+    matchesVersion = version;
+    searchMatches =
+        text.isEmpty() ? null : index.search(text, mode != Mode.LOCATION, mode != Mode.ITEM);
   }
 
-  public void addGuiToPanel(JPanel panel) {
-    panel.add(searchPanel);
-    panel.add(modePanel);
+  @Override
+  public boolean accept(StateContext ctx, SearchResult result) {
+    BitSet matches = searchMatches;
+    return matches == null || matches.get(result.itemCheck().id().id());
   }
 
-  private List<String> getAliases(SearchResult result) {
-    List<String> tokens = new ArrayList<>();
-    if (mode != Mode.LOCATION) {
-      tokens.add(result.item().term().name().toLowerCase());
-      tokens.add(result.item().displayName(transitionData).toLowerCase());
-    }
-
-    if (mode != Mode.ITEM) {
-      tokens.add(result.location().name().toLowerCase());
-      tokens.add(result.location().displayName(transitionData).toLowerCase());
-      tokens.add(result.location().scene().toLowerCase());
-      tokens.add(roomLabels.get(result.location().scene(), RoomLabels.Type.MAP).toLowerCase());
-      tokens.add(roomLabels.get(result.location().scene(), RoomLabels.Type.TITLE).toLowerCase());
-    }
+  public void setText(String text) {
+    textField.setText(text);
+  }
 
-    return tokens;
+  public void addGuiToPanel(JPanel panel) {
+    panel.add(searchPanel);
+    panel.add(modePanel);
   }
 
 }
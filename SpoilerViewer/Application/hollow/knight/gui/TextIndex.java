@@ -0,0 +1,199 @@
+package hollow.knight.gui;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.ItemChecks;
+import hollow.knight.logic.RoomLabels;
+
+/**
+ * A trigram index over the searchable names of every check, keyed by check id.
+ *
+ * <p>
+ * Kept up to date incrementally as checks change. A search token becomes an intersection of
+ * trigram posting sets, verified by substring match against only the surviving candidates.
+ * Updated on the UI thread and searched on the search thread, so every entry point synchronizes.
+ */
+final class TextIndex implements ItemChecks.Listener {
+
+  private enum Field {
+    ITEM, LOCATION;
+  }
+
+  private static final Joiner JOINER = Joiner.on('\n');
+
+  private final TransitionData transitionData;
+  private final RoomLabels roomLabels;
+
+  private ItemChecks checks = null;
+  private int version = 0;
+
+  private final BitSet allIds = new BitSet();
+  // Lowercase searchable text for each check id, by field. Aliases are joined with newlines, which
+  // never appear in search tokens, so matches can't span aliases.
+  private final String[][] texts = new String[Field.values().length][];
+  private final EnumMap<Field, Map<Long, BitSet>> postings = new EnumMap<>(Field.class);
+
+  TextIndex(TransitionData transitionData, RoomLabels roomLabels) {
+    this.transitionData = transitionData;
+    this.roomLabels = roomLabels;
+
+    for (Field f : Field.values()) {
+      texts[f.ordinal()] = new String[0];
+      postings.put(f, new HashMap<>());
+    }
+  }
+
+  // Incremented whenever the index changes.
+  synchronized int version() {
+    return version;
+  }
+
+  // Ensures this index covers the given checks, rebuilding it if they are new.
+  synchronized void sync(ItemChecks checks) {
+    if (this.checks == checks) {
+      return;
+    }
+
+    if (this.checks != null) {
+      this.checks.removeListener(this);
+    }
+    this.checks = checks;
+    checks.addListener(this);
+
+    allIds.clear();
+    for (Field f : Field.values()) {
+      texts[f.ordinal()] = new String[0];
+      postings.get(f).clear();
+    }
+    checks.allChecks().forEach(this::add);
+    ++version;
+  }
+
+  private String text(Field field, ItemCheck check) {
+    if (field == Field.ITEM) {
+      return JOINER.join(check.item().term().name(), check.item().displayName(transitionData))
+          .toLowerCase();
+    }
+
+    String scene = check.location().scene();
+    return JOINER.join(check.location().name(), check.location().displayName(transitionData), scene,
+        roomLabels.get(scene, RoomLabels.Type.MAP), roomLabels.get(scene, RoomLabels.Type.TITLE))
+        .toLowerCase();
+  }
+
+  private static long trigram(String s, int i) {
+    return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+  }
+
+  private void add(ItemCheck check) {
+    int id = check.id().id();
+    allIds.set(id);
+    for (Field f : Field.values()) {
+      String text = text(f, check);
+      String[] fieldTexts = texts[f.ordinal()];
+      if (id >= fieldTexts.length) {
+        fieldTexts = Arrays.copyOf(fieldTexts, Math.max(id + 1, fieldTexts.length * 2));
+        texts[f.ordinal()] = fieldTexts;
+      }
+      fieldTexts[id] = text;
+
+      for (int i = 0; i + 3 <= text.length(); i++) {
+        postings.get(f).computeIfAbsent(trigram(text, i), k -> new BitSet()).set(id);
+      }
+    }
+  }
+
+  private void remove(ItemCheck check) {
+    int id = check.id().id();
+    allIds.clear(id);
+    for (Field f : Field.values()) {
+      String text = id < texts[f.ordinal()].length ? texts[f.ordinal()][id] : null;
+      if (text == null) {
+        continue;
+      }
+      texts[f.ordinal()][id] = null;
+
+      for (int i = 0; i + 3 <= text.length(); i++) {
+        BitSet posting = postings.get(f).get(trigram(text, i));
+        if (posting != null) {
+          posting.clear(id);
+        }
+      }
+    }
+  }
+
+  private BitSet searchField(Field field, String token) {
+    BitSet candidates = (BitSet) allIds.clone();
+    for (int i = 0; i + 3 <= token.length() && !candidates.isEmpty(); i++) {
+      BitSet posting = postings.get(field).get(trigram(token, i));
+      if (posting == null) {
+        return new BitSet();
+      }
+      candidates.and(posting);
+    }
+
+    // Trigrams narrow the candidates; a substring check confirms them.
+    String[] fieldTexts = texts[field.ordinal()];
+    for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+      if (!fieldTexts[id].contains(token)) {
+        candidates.clear(id);
+      }
+    }
+    return candidates;
+  }
+
+  // Returns the ids of all checks matching every whitespace-separated token in 'text', which must
+  // already be lowercase.
+  synchronized BitSet search(String text, boolean items, boolean locations) {
+    BitSet result = (BitSet) allIds.clone();
+    for (String token : text.split("\\s")) {
+      if (token.isEmpty()) {
+        continue;
+      }
+
+      BitSet tokenMatches = new BitSet();
+      if (items) {
+        tokenMatches.or(searchField(Field.ITEM, token));
+      }
+      if (locations) {
+        tokenMatches.or(searchField(Field.LOCATION, token));
+      }
+      result.and(tokenMatches);
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized void checkAdded(ItemCheck check) {
+    add(check);
+    ++version;
+  }
+
+  @Override
+  public synchronized void checkRemoved(ItemCheck check) {
+    remove(check);
+    ++version;
+  }
+
+  @Override
+  public synchronized void checkReplaced(ItemCheck before, ItemCheck after) {
+    remove(before);
+    add(after);
+    ++version;
+  }
+
+  @Override
+  public synchronized void multipleChecksReplaced(
+      ImmutableMap<ItemCheck, ItemCheck> replacements) {
+    // Ids may be reassigned among the replacements, so remove everything before adding.
+    replacements.keySet().forEach(this::remove);
+    replacements.values().forEach(this::add);
+    ++version;
+  }
+}
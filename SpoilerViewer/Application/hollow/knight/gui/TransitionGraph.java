@@ -0,0 +1,88 @@
+package hollow.knight.gui;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.ItemChecks;
+
+/**
+ * All transition checks, pre-parsed and indexed by source and target, and kept current as checks
+ * change.
+ */
+public final class TransitionGraph implements ItemChecks.Listener {
+  @AutoValue
+  public abstract static class Edge {
+    public abstract ItemCheck check();
+
+    public abstract Gate source();
+
+    public abstract Gate target();
+
+    static Edge create(ItemCheck check) {
+      return new AutoValue_TransitionGraph_Edge(check, Gate.parse(check.location().name()),
+          Gate.parse(check.item().term().name()));
+    }
+  }
+
+  private final Map<ItemCheck, Edge> edges = new HashMap<>();
+  private final SetMultimap<String, Edge> edgesBySourceScene = HashMultimap.create();
+  private final SetMultimap<Gate, Edge> edgesBySourceGate = HashMultimap.create();
+  private final SetMultimap<String, Edge> edgesByTargetScene = HashMultimap.create();
+
+  public TransitionGraph(ItemChecks checks) {
+    checks.allChecks().forEach(this::checkAdded);
+  }
+
+  // A live view; must not be held across changes to checks.
+  public Set<Edge> edgesFromScene(String scene) {
+    return edgesBySourceScene.get(scene);
+  }
+
+  // A live view; must not be held across changes to checks.
+  public Set<Edge> edgesToScene(String scene) {
+    return edgesByTargetScene.get(scene);
+  }
+
+  // The edge leading back from this edge's target to its source, or null if there is none.
+  public Edge reverse(Edge edge) {
+    for (Edge e : edgesBySourceGate.get(edge.target())) {
+      if (e.target().equals(edge.source())) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void checkAdded(ItemCheck check) {
+    if (!check.isTransition()) {
+      return;
+    }
+
+    Edge edge = Edge.create(check);
+    edges.put(check, edge);
+    edgesBySourceScene.put(edge.source().sceneName(), edge);
+    edgesBySourceGate.put(edge.source(), edge);
+    edgesByTargetScene.put(edge.target().sceneName(), edge);
+  }
+
+  @Override
+  public void checkRemoved(ItemCheck check) {
+    Edge edge = edges.remove(check);
+    if (edge != null) {
+      edgesBySourceScene.remove(edge.source().sceneName(), edge);
+      edgesBySourceGate.remove(edge.source(), edge);
+      edgesByTargetScene.remove(edge.target().sceneName(), edge);
+    }
+  }
+
+  @Override
+  public void checkReplaced(ItemCheck before, ItemCheck after) {
+    checkRemoved(before);
+    checkAdded(after);
+  }
+}
@@ -51,6 +51,7 @@ public final class TransitionVisualizer extends JFrame
 
   private final Application application;
 
+  private final TransitionGraph transitionGraph;
   private final TransitionVisualizerCanvas canvas;
 
   private final JTextField scenesFilter;
@@ -66,6 +67,8 @@ public final class TransitionVisualizer extends JFrame
     super("Transition Visualizer");
 
     this.application = application;
+    this.transitionGraph = new TransitionGraph(application.ctx().checks());
+    application.ctx().checks().addListener(transitionGraph);
     application.ctx().checks().addListener(this);
 
     this.canvas = new TransitionVisualizerCanvas(this);
@@ -123,6 +126,10 @@ public final class TransitionVisualizer extends JFrame
     return application.transitionData();
   }
 
+  public TransitionGraph transitionGraph() {
+    return transitionGraph;
+  }
+
   public TransitionVisualizerPlacements placements() {
     return application.transitionVisualizerPlacements();
   }
@@ -490,6 +497,7 @@ public final class TransitionVisualizer extends JFrame
 
   @Override
   public void onClose() {
+    application.ctx().checks().removeListener(transitionGraph);
     application.ctx().checks().removeListener(TransitionVisualizer.this);
   }
 
@@ -29,10 +29,16 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import javax.imageio.ImageIO;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
@@ -43,7 +49,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.MoreCollectors;
-import com.google.common.collect.Sets;
 import hollow.knight.gui.TransitionData.GateData;
 import hollow.knight.gui.TransitionData.SceneData;
 import hollow.knight.logic.DarknessOverrides.Darkness;
@@ -390,10 +395,12 @@ public final class TransitionVisualizerCanvas extends JPanel {
 
     selectionDrag = dragPoint;
     Rect r = Rect.containing(selectionAnchor, selectionDrag);
+    ImmutableList<ScenePlacement> candidates =
+        parent.placements().placementsIntersecting(r).reverse();
 
     if (parent.isICDL()) {
       // Check for an editable transition first.
-      for (ScenePlacement p : parent.placements().allScenePlacementsReversed()) {
+      for (ScenePlacement p : candidates) {
         SceneData sData = data().sceneData(p.scene());
 
         for (GateData gate : sData.allGates()) {
@@ -423,7 +430,7 @@ public final class TransitionVisualizerCanvas extends JPanel {
     // If our first match contains the highlight, select only the top rect.
     // Otherwise, select all intersecting.
     boolean first = true;
-    for (ScenePlacement p : parent.placements().allScenePlacementsReversed()) {
+    for (ScenePlacement p : candidates) {
       Rect pr = p.getRect(data());
       if (pr.intersects(r)) {
         highlightedSceneSelection.add(p);
@@ -442,7 +449,8 @@ public final class TransitionVisualizerCanvas extends JPanel {
     lastDrag = dragPoint;
 
     if (dragSelection) {
-      currentSceneSelection.forEach(pl -> pl.translate(dx, dy));
+      currentSceneSelection
+          .forEach(pl -> parent.placements().movePlacement(pl, pl.point().translated(dx, dy)));
     } else {
       center = center.translated(-dx, -dy);
     }
@@ -521,7 +529,8 @@ public final class TransitionVisualizerCanvas extends JPanel {
           repaint();
         } else if (dragAnchor != null) {
           updateDragAnchor(mouseMoved);
-          currentSceneSelection.forEach(s -> s.update(snap.snap(s.point())));
+          currentSceneSelection
+              .forEach(s -> parent.placements().movePlacement(s, snap.snap(s.point())));
 
           dragTransform = null;
           dragAnchor = null;
@@ -808,32 +817,38 @@ public final class TransitionVisualizerCanvas extends JPanel {
     }
   }
 
-  private void renderTransitions(Graphics2D g2d) throws ICDLException {
-    Set<ItemCheck> transitionsToDraw = new HashSet<>();
-    Set<ItemCheck> duplicates = new HashSet<>();
-    parent.ctx().checks().allChecks().filter(c -> c.isTransition()).forEach(transitionsToDraw::add);
+  private void renderTransitions(Graphics2D g2d, Rect visible) {
+    // Only transitions with an end in a visible scene are drawn.
+    Set<TransitionGraph.Edge> edges = new LinkedHashSet<>();
+    for (ScenePlacement p : parent.placements().placementsIntersecting(visible)) {
+      edges.addAll(parent.transitionGraph().edgesFromScene(p.scene()));
+      edges.addAll(parent.transitionGraph().edgesToScene(p.scene()));
+    }
 
+    Map<String, ImmutableSet<ScenePlacement>> placed = new HashMap<>();
+    Set<TransitionGraph.Edge> duplicates = new HashSet<>();
     List<TransitionToDraw> toDraw = new ArrayList<>();
-    for (ItemCheck transition : transitionsToDraw) {
-      if (duplicates.contains(transition)) {
+    for (TransitionGraph.Edge edge : edges) {
+      if (duplicates.contains(edge)) {
         continue;
       }
 
-      Gate source = Gate.parse(transition.location().name());
-      Gate target = Gate.parse(transition.item().term().name());
+      ItemCheck transition = edge.check();
+      Gate source = edge.source();
+      Gate target = edge.target();
 
-      // Check both are visible.
-      ImmutableSet<ScenePlacement> sourcePlacements = parent.placements()
-          .placementsForScene(source.sceneName()).collect(ImmutableSet.toImmutableSet());
-      ImmutableSet<ScenePlacement> targetPlacements = parent.placements()
-          .placementsForScene(target.sceneName()).collect(ImmutableSet.toImmutableSet());
+      // Check both are placed.
+      ImmutableSet<ScenePlacement> sourcePlacements = placed.computeIfAbsent(source.sceneName(),
+          s -> parent.placements().placementsForScene(s).collect(ImmutableSet.toImmutableSet()));
+      ImmutableSet<ScenePlacement> targetPlacements = placed.computeIfAbsent(target.sceneName(),
+          s -> parent.placements().placementsForScene(s).collect(ImmutableSet.toImmutableSet()));
       if (sourcePlacements.isEmpty() || targetPlacements.isEmpty()) {
         continue;
       }
 
       if (visibleTransitions != VisibleTransitions.ALL) {
-        int empty = (Sets.intersection(sourcePlacements, currentSceneSelection).isEmpty() ? 1 : 0)
-            + (Sets.intersection(targetPlacements, currentSceneSelection).isEmpty() ? 1 : 0);
+        int empty = (Collections.disjoint(sourcePlacements, currentSceneSelection) ? 1 : 0)
+            + (Collections.disjoint(targetPlacements, currentSceneSelection) ? 1 : 0);
 
         if (visibleTransitions == VisibleTransitions.CONTAIN_SELECTED && empty > 0) {
           continue;
@@ -844,9 +859,8 @@ public final class TransitionVisualizerCanvas extends JPanel {
 
       boolean symmetric = false;
       if (data().isTarget(source) && data().isSource(target)) {
-        ItemCheck dupe = parent.ctx().checks().getChecksAtLocation(transition.item().term().name())
-            .collect(MoreCollectors.onlyElement());
-        if (dupe.item().term().name().equals(transition.location().name())) {
+        TransitionGraph.Edge dupe = parent.transitionGraph().reverse(edge);
+        if (dupe != null) {
           // This is a symmetric transition
           duplicates.add(dupe);
           symmetric = true;
@@ -857,9 +871,12 @@ public final class TransitionVisualizerCanvas extends JPanel {
         for (ScenePlacement t : targetPlacements) {
           Rect r1 = s.getTransitionRect(source.gateName(), data());
           Rect r2 = t.getTransitionRect(target.gateName(), data());
+          if (!Rect.containing(r1.center(), r2.center()).intersects(visible)) {
+            continue;
+          }
 
-          toDraw.add(TransitionToDraw.create(r1.center(), sourceTransitionColor(transition, source),
-              r2.center(),
+          toDraw.add(TransitionToDraw.create(r1.center(),
+              sourceTransitionColor(transition, source), r2.center(),
               symmetric ? sourceTransitionColor(transition, source) : Color.red.darker()));
         }
       }
@@ -916,7 +933,7 @@ public final class TransitionVisualizerCanvas extends JPanel {
     g2d.fillRect(-1, -1, (int) viewRect.width() + 2, (int) viewRect.height() + 2);
     g2d.transform(AffineTransform.getTranslateInstance(viewRect.width() / 2 - viewRect.center().x(),
         viewRect.height() / 2 - viewRect.center().y()));
-    paintInternal(g2d);
+    paintInternal(g2d, viewRect);
 
     JFileChooser c = new JFileChooser("Save As");
     c.setFileFilter(PNG_FILTER);
@@ -936,40 +953,144 @@ public final class TransitionVisualizerCanvas extends JPanel {
     }
   }
 
-  private void paintInternal(Graphics2D g2d) {
-    try {
-      // Draw components in order.
-      parent.placements().allScenePlacements().forEach(p -> renderScenePlacement(g2d, p));
-
-      // Draw visible transitions.
-      renderTransitions(g2d);
-
-      // Draw selection rect.
-      if (selectionAnchor != null) {
-        Rect r = Rect.containing(selectionAnchor, selectionDrag);
-        g2d.setColor(Color.white);
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.2f));
-        r.fill(g2d);
-        g2d.fillRect((int) r.x1(), (int) r.y1(), (int) r.width(), (int) r.height());
-        g2d.setStroke(new BasicStroke(0.7f));
+  // Scene labels are drawn outside of scene bounds, so cull with some slack.
+  private static final double LABEL_MARGIN = 300;
+
+  private void renderScenes(Graphics2D g2d, Rect visible) {
+    Rect cullRect = new Rect(visible.center(), visible.width() + LABEL_MARGIN * 2,
+        visible.height() + LABEL_MARGIN * 2);
+    parent.placements().placementsIntersecting(cullRect)
+        .forEach(p -> renderScenePlacement(g2d, p));
+  }
+
+  private void renderOverlay(Graphics2D g2d) {
+    // Draw selection rect.
+    if (selectionAnchor != null) {
+      Rect r = Rect.containing(selectionAnchor, selectionDrag);
+      g2d.setColor(Color.white);
+      g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.2f));
+      r.fill(g2d);
+      g2d.fillRect((int) r.x1(), (int) r.y1(), (int) r.width(), (int) r.height());
+      g2d.setStroke(new BasicStroke(0.7f));
+      g2d.setComposite(AlphaComposite.Src);
+      r.draw(g2d);
+    }
+    if (currentGate != null) {
+      Point start = currentGate.scene().getTransitionRect(currentGate.gateName(), data()).center();
+      Point end = mouseMoved;
+
+      // TODO: Adjust color based on target eligibility
+      g2d.setStroke(new BasicStroke(7.5f));
+      g2d.setColor(Color.GREEN.brighter());
+      g2d.drawLine((int) start.x(), (int) start.y(), (int) end.x(), (int) end.y());
+    }
+  }
+
+  private void paintInternal(Graphics2D g2d, Rect visible) {
+    // Draw components in order.
+    renderScenes(g2d, visible);
+    renderTransitions(g2d, visible);
+    renderOverlay(g2d);
+  }
+
+  // Layers extend this far past each edge of the viewport, as a fraction of its size, so that
+  // small pans don't need a re-render.
+  private static final double LAYER_MARGIN = 0.25;
+
+  /**
+   * A cached rendering of part of the map, in device pixels.
+   *
+   * <p>
+   * The image is re-rendered only when its content key or the zoom changes, or when the viewport
+   * pans outside of it. Otherwise it is just blitted at an offset.
+   */
+  private final class Layer {
+    private final String name;
+    private final boolean opaque;
+    private final BiConsumer<Graphics2D, Rect> renderer;
+
+    private BufferedImage image = null;
+    private List<Object> key = null;
+    private double scale = 0; // Device pixels per map unit
+    private Point origin = null; // Map point at the top-left of the image
+
+    Layer(String name, boolean opaque, BiConsumer<Graphics2D, Rect> renderer) {
+      this.name = name;
+      this.opaque = opaque;
+      this.renderer = renderer;
+    }
+
+    private boolean covers(Point viewOrigin, double scale, int width, int height) {
+      double dx = (viewOrigin.x() - origin.x()) * scale;
+      double dy = (viewOrigin.y() - origin.y()) * scale;
+      return dx >= 0 && dy >= 0 && dx + width <= image.getWidth()
+          && dy + height <= image.getHeight();
+    }
+
+    private void render(Point viewOrigin, double scale, int width, int height) {
+      int w = (int) Math.ceil(width * (1 + 2 * LAYER_MARGIN));
+      int h = (int) Math.ceil(height * (1 + 2 * LAYER_MARGIN));
+      if (image == null || image.getWidth() != w || image.getHeight() != h) {
+        image = new BufferedImage(w, h,
+            opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+      }
+      origin = viewOrigin.translated(-width * LAYER_MARGIN / scale,
+          -height * LAYER_MARGIN / scale);
+
+      Graphics2D g2d = image.createGraphics();
+      long start = System.nanoTime();
+      try {
         g2d.setComposite(AlphaComposite.Src);
-        r.draw(g2d);
+        g2d.setColor(opaque ? Color.BLACK : new Color(0, 0, 0, 0));
+        g2d.fillRect(0, 0, w, h);
+        g2d.setComposite(AlphaComposite.SrcOver);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        g2d.scale(scale, scale);
+        g2d.translate(-origin.x(), -origin.y());
+        renderer.accept(g2d, new Rect(origin.translated(w / (2 * scale), h / (2 * scale)),
+            w / scale, h / scale));
+      } finally {
+        g2d.dispose();
+        Performance.record("TransitionVisualizerCanvas.render(" + name + ")",
+            System.nanoTime() - start);
       }
-      if (currentGate != null) {
-        Point start =
-            currentGate.scene().getTransitionRect(currentGate.gateName(), data()).center();
-        Point end = mouseMoved;
-
-        // TODO: Adjust color based on target eligibility
-        g2d.setStroke(new BasicStroke(7.5f));
-        g2d.setColor(Color.GREEN.brighter());
-        g2d.drawLine((int) start.x(), (int) start.y(), (int) end.x(), (int) end.y());
+    }
+
+    // Draws this layer onto 'g2d', which must be in device pixels, re-rendering if needed.
+    void paint(Graphics2D g2d, List<Object> key, Point viewOrigin, double scale, int width,
+        int height) {
+      if (image == null || !key.equals(this.key) || scale != this.scale
+          || !covers(viewOrigin, scale, width, height)) {
+        render(viewOrigin, scale, width, height);
+        this.key = key;
+        this.scale = scale;
       }
-    } catch (ICDLException ex) {
-      throw new AssertionError(ex);
+
+      g2d.drawImage(image, (int) Math.round((origin.x() - viewOrigin.x()) * scale),
+          (int) Math.round((origin.y() - viewOrigin.y()) * scale), null);
     }
   }
 
+  private final Layer sceneLayer = new Layer("scenes", true, this::renderScenes);
+  private final Layer transitionLayer =
+      new Layer("transitions", false, this::renderTransitions);
+
+  // Everything besides the view which affects how scenes are drawn.
+  private List<Object> sceneLayerKey() {
+    return Arrays.asList(parent.placements().version(),
+        ImmutableSet.copyOf(currentSceneSelection), ImmutableSet.copyOf(highlightedSceneSelection),
+        font, showDarkness ? parent.ctx().darkness() : null);
+  }
+
+  // Everything besides the view which affects which transitions are drawn.
+  private List<Object> transitionLayerKey() {
+    return Arrays.asList(parent.placements().version(), parent.ctx().checks(),
+        parent.ctx().checks().version(), visibleTransitions,
+        visibleTransitions == VisibleTransitions.ALL ? null
+            : ImmutableSet.copyOf(currentSceneSelection));
+  }
+
   @Override
   public void paintComponent(Graphics g) {
     Graphics2D g2d = (Graphics2D) g;
@@ -979,13 +1100,28 @@ public final class TransitionVisualizerCanvas extends JPanel {
     g2d.setColor(Color.BLACK);
     g2d.fillRect(bounds.x - 1, bounds.y - 1, bounds.width + 1, bounds.height + 1);
 
-    // Apply affine transform.
     AffineTransform prev = g2d.getTransform();
-    g2d.transform(transform());
+    long start = System.nanoTime();
     try {
-      paintInternal(g2d);
+      // Blit cached layers in device pixels, so they stay sharp on scaled displays.
+      double deviceScale = prev.getScaleX();
+      int width = (int) Math.ceil(getWidth() * deviceScale);
+      int height = (int) Math.ceil(getHeight() * deviceScale);
+      Point viewOrigin = center.translated(-getWidth() / (2 * zoom), -getHeight() / (2 * zoom));
+
+      g2d.setTransform(
+          AffineTransform.getTranslateInstance(prev.getTranslateX(), prev.getTranslateY()));
+      sceneLayer.paint(g2d, sceneLayerKey(), viewOrigin, zoom * deviceScale, width, height);
+      transitionLayer.paint(g2d, transitionLayerKey(), viewOrigin, zoom * deviceScale, width,
+          height);
+
+      // Apply affine transform.
+      g2d.setTransform(prev);
+      g2d.transform(transform());
+      renderOverlay(g2d);
     } finally {
       g2d.setTransform(prev);
+      Performance.record("TransitionVisualizerCanvas.paintComponent", System.nanoTime() - start);
     }
   }
 }
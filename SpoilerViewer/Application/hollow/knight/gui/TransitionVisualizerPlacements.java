@@ -1,11 +1,14 @@
 package hollow.knight.gui;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.SetMultimap;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -18,7 +21,17 @@ public final class TransitionVisualizerPlacements implements SaveInterface {
   private final LinkedHashSet<ScenePlacement> scenePlacements = new LinkedHashSet<>();
   private final SetMultimap<String, ScenePlacement> scenePlacementsByName = HashMultimap.create();
 
-  public TransitionVisualizerPlacements() {}
+  private final TransitionData data;
+  // Bounds of each placement, including its gates.
+  private final QuadTree<ScenePlacement> index = new QuadTree<>();
+  // Insertion order, which is also paint order.
+  private final Map<ScenePlacement, Long> order = new HashMap<>();
+  private long nextOrder = 0;
+  private long version = 0;
+
+  public TransitionVisualizerPlacements(TransitionData data) {
+    this.data = data;
+  }
 
   public boolean isEmpty() {
     return scenePlacements.isEmpty();
@@ -33,21 +46,50 @@ public final class TransitionVisualizerPlacements implements SaveInterface {
   private void addPlacementInternal(ScenePlacement p) {
     scenePlacements.add(p);
     scenePlacementsByName.put(p.scene(), p);
+    order.put(p, nextOrder++);
+    index.insert(p, bounds(p));
+    ++version;
   }
 
   private void removePlacementInternal(ScenePlacement p) {
     scenePlacements.remove(p);
     scenePlacementsByName.remove(p.scene(), p);
+    order.remove(p);
+    index.remove(p);
+    ++version;
+  }
+
+  private Rect bounds(ScenePlacement p) {
+    List<Rect> rects = new ArrayList<>();
+    rects.add(p.getRect(data));
+    data.sceneData(p.scene()).allGates()
+        .forEach(g -> rects.add(p.getTransitionRect(g.name(), data)));
+    return Rect.union(rects);
+  }
+
+  public void movePlacement(ScenePlacement p, Point point) {
+    p.update(point);
+    if (order.containsKey(p)) {
+      index.insert(p, bounds(p));
+    }
+    ++version;
+  }
+
+  // Incremented on every change to the set of placements or their positions.
+  public long version() {
+    return version;
   }
 
   public Stream<ScenePlacement> allScenePlacements() {
     return scenePlacements.stream();
   }
 
-  public Iterable<ScenePlacement> allScenePlacementsReversed() {
-    List<ScenePlacement> reversed = new ArrayList<>(scenePlacements);
-    Collections.reverse(reversed);
-    return reversed;
+  // Placements whose scene or gates intersect 'r', bottom-most first.
+  public ImmutableList<ScenePlacement> placementsIntersecting(Rect r) {
+    List<ScenePlacement> out = new ArrayList<>();
+    index.query(r, out::add);
+    out.sort(Comparator.comparing(order::get));
+    return ImmutableList.copyOf(out);
   }
 
   public Stream<ScenePlacement> placementsForScene(String scene) {
@@ -66,6 +108,9 @@ public final class TransitionVisualizerPlacements implements SaveInterface {
   public void clear() {
     scenePlacements.clear();
     scenePlacementsByName.clear();
+    order.clear();
+    index.clear();
+    ++version;
   }
 
   @Override
@@ -1,25 +1,51 @@
 package hollow.knight.gui;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.SortedMap;
+import java.util.Map;
 import java.util.TreeMap;
-import com.google.auto.value.AutoValue;
-import com.google.auto.value.extension.memoized.Memoized;
+import java.util.function.Consumer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Sets;
 import hollow.knight.logic.CheckId;
+import hollow.knight.logic.Costs;
+import hollow.knight.logic.Item;
 import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.ItemChecks;
+import hollow.knight.logic.Location;
+import hollow.knight.logic.NotchCosts;
 import hollow.knight.logic.StateContext;
 import hollow.knight.logic.SynchronizedEntityManager;
 
-public final class UndoHistory {
+/**
+ * A linear history of check and notch cost edits.
+ *
+ * <p>
+ * Edits are tracked as they happen through check and notch cost listeners, so recording and
+ * stepping through history cost time proportional to the edits involved, not to the number of
+ * checks.
+ *
+ * <p>
+ * Records are stored as packed deltas between periodic checkpoints. Once the history exceeds its
+ * memory budget, the least recently used checkpoints and their deltas are compressed into a
+ * temporary file, and read back in when needed.
+ */
+public final class UndoHistory implements ItemChecks.Listener, NotchCosts.Listener {
 
   public interface Listener {
     void newSnapshot(int index);
@@ -27,132 +53,490 @@ public final class UndoHistory {
     void truncated(int lastIndex);
   }
 
-  private interface CheckpointInterface {
-    Set<ItemCheck> checks();
+  public static final long DEFAULT_MEMORY_BUDGET = 16L << 20;
+
+  // Checks are packed as: id, location, item, costs, vanilla.
+  private static final int CHECK_INTS = 5;
+  // Notch cost changes are packed as: index, before, after.
+  private static final int NOTCH_INTS = 3;
+  // Rough per-array overhead, for memory accounting.
+  private static final int ARRAY_BYTES = 16;
+  // Marks a check id which doesn't exist.
+  private static final int[] ABSENT = new int[0];
+
+  private static final class Interner<T> {
+    private final List<T> values = new ArrayList<>();
+    private final Map<T, Integer> ordinals = new HashMap<>();
+
+    int ordinal(T value) {
+      Integer ordinal = ordinals.get(value);
+      if (ordinal == null) {
+        ordinal = values.size();
+        values.add(value);
+        ordinals.put(value, ordinal);
+      }
+      return ordinal;
+    }
 
-    List<Integer> notchCosts();
+    T get(int ordinal) {
+      return values.get(ordinal);
+    }
 
-    default int size() {
-      return checks().size() + notchCosts().size();
+    void clear() {
+      values.clear();
+      ordinals.clear();
     }
   }
 
-  private static class Checkpoint implements CheckpointInterface {
-    private final Set<ItemCheck> checks;
-    private final List<Integer> notchCosts;
+  private final Interner<Location> locations = new Interner<>();
+  private final Interner<Item> items = new Interner<>();
+  private final Interner<Costs> costs = new Interner<>();
 
-    public Checkpoint() {
-      this.checks = new HashSet<>();
-      this.notchCosts = new ArrayList<>();
-    }
+  private int[] pack(ItemCheck check) {
+    return new int[] {check.id().id(), locations.ordinal(check.location()),
+        items.ordinal(check.item()), costs.ordinal(check.costs()), check.vanilla() ? 1 : 0};
+  }
 
-    private Checkpoint(Checkpoint copy) {
-      this.checks = new HashSet<>(copy.checks);
-      this.notchCosts = new ArrayList<>(copy.notchCosts);
+  private ItemCheck unpack(int[] packed, int offset) {
+    return ItemCheck.create(CheckId.of(packed[offset]), locations.get(packed[offset + 1]),
+        items.get(packed[offset + 2]), costs.get(packed[offset + 3]), packed[offset + 4] != 0);
+  }
+
+  private static int[] concat(List<int[]> packed, int width) {
+    int[] out = new int[packed.size() * width];
+    for (int i = 0; i < packed.size(); i++) {
+      System.arraycopy(packed.get(i), 0, out, i * width, width);
     }
+    return out;
+  }
+
+  // An unpacked checkpoint, for diffing and replaying deltas.
+  private static final class Snapshot {
+    private final Map<Integer, int[]> checks = new HashMap<>();
+    private final List<Integer> notchCosts = new ArrayList<>();
 
-    public void reset(CheckpointInterface other) {
-      checks.clear();
-      notchCosts.clear();
+    int size() {
+      return checks.size() + notchCosts.size();
+    }
 
-      checks.addAll(other.checks());
-      notchCosts.addAll(other.notchCosts());
+    void apply(Delta delta) {
+      for (int i = 0; i < delta.removed.length; i += CHECK_INTS) {
+        checks.remove(delta.removed[i]);
+      }
+      for (int i = 0; i < delta.added.length; i += CHECK_INTS) {
+        checks.put(delta.added[i], Arrays.copyOfRange(delta.added, i, i + CHECK_INTS));
+      }
+      for (int i = 0; i < delta.notchCosts.length; i += NOTCH_INTS) {
+        notchCosts.set(delta.notchCosts[i], delta.notchCosts[i + 2]);
+      }
     }
+  }
 
-    @Override
-    public Set<ItemCheck> checks() {
-      return checks;
+  private Snapshot snapshotOf(StateContext ctx) {
+    Snapshot s = new Snapshot();
+    ctx.checks().allChecks().forEach(c -> s.checks.put(c.id().id(), pack(c)));
+    s.notchCosts.addAll(ctx.notchCosts().costs());
+    return s;
+  }
+
+  // A full snapshot, with checks packed in id order.
+  private static final class Checkpoint {
+    private final int[] checks;
+    private final int[] notchCosts;
+
+    Checkpoint(int[] checks, int[] notchCosts) {
+      this.checks = checks;
+      this.notchCosts = notchCosts;
     }
 
-    @Override
-    public List<Integer> notchCosts() {
-      return notchCosts;
+    static Checkpoint pack(Snapshot s) {
+      List<int[]> checks = new ArrayList<>(s.checks.values());
+      checks.sort(Comparator.comparingInt(c -> c[0]));
+      return new Checkpoint(concat(checks, CHECK_INTS),
+          s.notchCosts.stream().mapToInt(Integer::intValue).toArray());
     }
 
-    public Checkpoint deepCopy() {
-      return new Checkpoint(this);
+    Snapshot unpack() {
+      Snapshot s = new Snapshot();
+      for (int i = 0; i < checks.length; i += CHECK_INTS) {
+        s.checks.put(checks[i], Arrays.copyOfRange(checks, i, i + CHECK_INTS));
+      }
+      Arrays.stream(notchCosts).forEach(s.notchCosts::add);
+      return s;
     }
 
-    public void applyDelta(Delta delta) {
-      checks.removeIf(c -> delta.removedCheckIds().contains(c.id()));
-      checks.addAll(delta.newChecks());
-      delta.updatedNotchCosts().forEach(notchCosts::set);
+    long bytes() {
+      return 2 * ARRAY_BYTES + 4L * (checks.length + notchCosts.length);
     }
   }
 
-  private static final class StateContextView implements CheckpointInterface {
-    private final StateContext ctx;
+  // The difference between two snapshots. Removed checks are kept whole, so deltas are reversible.
+  private static final class Delta {
+    private final int[] added;
+    private final int[] removed;
+    private final int[] notchCosts;
 
-    StateContextView(StateContext ctx) {
-      this.ctx = ctx;
+    Delta(int[] added, int[] removed, int[] notchCosts) {
+      this.added = added;
+      this.removed = removed;
+      this.notchCosts = notchCosts;
     }
 
-    @Override
-    public Set<ItemCheck> checks() {
-      return ctx.checks().allChecksSet();
+    static Delta compute(Snapshot before, Snapshot after) {
+      List<int[]> added = new ArrayList<>();
+      after.checks.forEach((id, c) -> {
+        if (!Arrays.equals(c, before.checks.get(id))) {
+          added.add(c);
+        }
+      });
+      List<int[]> removed = new ArrayList<>();
+      before.checks.forEach((id, c) -> {
+        if (!Arrays.equals(c, after.checks.get(id))) {
+          removed.add(c);
+        }
+      });
+
+      List<int[]> notchCosts = new ArrayList<>();
+      for (int i = 0; i < after.notchCosts.size(); i++) {
+        int b = before.notchCosts.get(i);
+        int a = after.notchCosts.get(i);
+        if (a != b) {
+          notchCosts.add(new int[] {i, b, a});
+        }
+      }
+
+      return new Delta(concat(added, CHECK_INTS), concat(removed, CHECK_INTS),
+          concat(notchCosts, NOTCH_INTS));
     }
 
-    @Override
-    public List<Integer> notchCosts() {
-      return ctx.notchCosts().costs();
+    Delta reverse() {
+      int[] reversedNotchCosts = notchCosts.clone();
+      for (int i = 0; i < notchCosts.length; i += NOTCH_INTS) {
+        reversedNotchCosts[i + 1] = notchCosts[i + 2];
+        reversedNotchCosts[i + 2] = notchCosts[i + 1];
+      }
+      return new Delta(removed, added, reversedNotchCosts);
+    }
+
+    int size() {
+      return (added.length + removed.length) / CHECK_INTS + notchCosts.length / NOTCH_INTS;
+    }
+
+    long bytes() {
+      return 3 * ARRAY_BYTES + 4L * (added.length + removed.length + notchCosts.length);
     }
   }
 
-  @AutoValue
-  abstract static class Delta {
-    public abstract ImmutableSet<ItemCheck> newChecks();
+  // The net effect of a sequence of changes: each touched check id and notch index, before the
+  // first change and after the last.
+  private static final class Changes {
+    private final Map<Integer, int[]> checksBefore = new HashMap<>();
+    private final Map<Integer, int[]> checksAfter = new HashMap<>();
+    private final Map<Integer, Integer> notchCostsBefore = new HashMap<>();
+    private final Map<Integer, Integer> notchCostsAfter = new HashMap<>();
+    private int effort = 0;
+
+    void check(int id, int[] before, int[] after) {
+      checksBefore.putIfAbsent(id, before);
+      checksAfter.put(id, after);
+      ++effort;
+    }
 
-    public abstract ImmutableSet<CheckId> removedCheckIds();
+    void notchCost(int index, int before, int after) {
+      notchCostsBefore.putIfAbsent(index, before);
+      notchCostsAfter.put(index, after);
+      ++effort;
+    }
 
-    public abstract ImmutableMap<Integer, Integer> updatedNotchCosts();
+    void add(Delta delta) {
+      for (int i = 0; i < delta.removed.length; i += CHECK_INTS) {
+        check(delta.removed[i], Arrays.copyOfRange(delta.removed, i, i + CHECK_INTS), ABSENT);
+      }
+      for (int i = 0; i < delta.added.length; i += CHECK_INTS) {
+        check(delta.added[i], ABSENT, Arrays.copyOfRange(delta.added, i, i + CHECK_INTS));
+      }
+      for (int i = 0; i < delta.notchCosts.length; i += NOTCH_INTS) {
+        notchCost(delta.notchCosts[i], delta.notchCosts[i + 1], delta.notchCosts[i + 2]);
+      }
+    }
 
-    @Memoized
-    public int size() {
-      return newChecks().size() + removedCheckIds().size() + updatedNotchCosts().size();
+    // The number of individual changes added, including ones which cancelled out.
+    int effort() {
+      return effort;
     }
 
-    private static ImmutableMap<Integer, Integer> notchDiff(List<Integer> before,
-        List<Integer> after) {
-      ImmutableMap.Builder<Integer, Integer> diff = ImmutableMap.builder();
-      for (int i = 0; i < after.size(); i++) {
-        if (before.get(i).intValue() != after.get(i).intValue()) {
-          diff.put(i, after.get(i).intValue());
+    void clear() {
+      checksBefore.clear();
+      checksAfter.clear();
+      notchCostsBefore.clear();
+      notchCostsAfter.clear();
+      effort = 0;
+    }
+
+    Delta toDelta() {
+      List<int[]> added = new ArrayList<>();
+      List<int[]> removed = new ArrayList<>();
+      checksAfter.forEach((id, after) -> {
+        int[] before = checksBefore.get(id);
+        if (!Arrays.equals(before, after)) {
+          if (after != ABSENT) {
+            added.add(after);
+          }
+          if (before != ABSENT) {
+            removed.add(before);
+          }
         }
-      }
-      return diff.build();
+      });
+
+      List<int[]> notchCosts = new ArrayList<>();
+      notchCostsAfter.forEach((index, after) -> {
+        int before = notchCostsBefore.get(index);
+        if (before != after) {
+          notchCosts.add(new int[] {index, before, after});
+        }
+      });
+
+      return new Delta(concat(added, CHECK_INTS), concat(removed, CHECK_INTS),
+          concat(notchCosts, NOTCH_INTS));
     }
+  }
+
+  // A checkpoint and the deltas recorded after it, up to and including the next checkpoint.
+  private static final class Segment {
+    // Null while spilled to disk.
+    private Checkpoint checkpoint;
+    private List<Delta> deltas;
 
-    public static Delta compute(CheckpointInterface before, CheckpointInterface after) {
-      return new AutoValue_UndoHistory_Delta(
-          ImmutableSet.copyOf(Sets.difference(after.checks(), before.checks())),
-          Sets.difference(before.checks(), after.checks()).stream().map(ItemCheck::id).collect(
-              ImmutableSet.toImmutableSet()),
-          notchDiff(before.notchCosts(), after.notchCosts()));
+    // The on-disk copy, if any. Invalidated by any change to the segment.
+    private long fileOffset = -1;
+    private int fileLength = 0;
+    private long lastUsed = 0;
+
+    Segment(Checkpoint checkpoint) {
+      this.checkpoint = checkpoint;
+      this.deltas = new ArrayList<>();
+    }
+
+    boolean isResident() {
+      return checkpoint != null;
+    }
+
+    long bytes() {
+      return checkpoint.bytes() + deltas.stream().mapToLong(Delta::bytes).sum();
     }
   }
 
   private final SynchronizedEntityManager<Listener> listeners = new SynchronizedEntityManager<>();
 
+  private final long memoryBudget;
+  private final Consumer<Exception> errorHandler;
+  private Path spillPath = null;
+  private RandomAccessFile spillFile = null;
+  // Set if spilling failed, after which everything stays in memory until reset.
+  private boolean spillFailed = false;
+  // Unused extents of the spill file by offset, coalesced, all below spillEnd.
+  private final TreeMap<Long, Integer> freeExtents = new TreeMap<>();
+  private long spillEnd = 0;
+  private long clock = 0;
+
   private final List<String> labels = new ArrayList<>();
-  private final SortedMap<Integer, Checkpoint> checkpoints = new TreeMap<>();
-  private final ListMultimap<Integer, Delta> deltas = ArrayListMultimap.create();
-  private int checkpointIndex = -1;
-  private final Checkpoint current = new Checkpoint();
+  private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+  // The latest record.
+  private Snapshot current = new Snapshot();
+
+  private StateContext ctx = null;
+  // Changes to `ctx` since the latest record.
+  private final Changes pending = new Changes();
+  // The record `ctx` currently matches, or -1 if edited since the last record or rewind.
+  private int position = -1;
+  private boolean rewinding = false;
 
   private int nextIndex = 0;
   private int deltaSum = 0;
 
-  public UndoHistory(String label, StateContext ctx) {
+  // 'memoryBudget' is in bytes. Errors writing the spill file are passed to 'errorHandler'; history
+  // is kept in memory instead.
+  public UndoHistory(String label, StateContext ctx, long memoryBudget,
+      Consumer<Exception> errorHandler) {
+    this.memoryBudget = memoryBudget;
+    this.errorHandler = errorHandler;
     reset(label, ctx);
   }
 
-  private Checkpoint get(int index) {
+  private static void writeInts(DataOutputStream out, int[] ints) throws IOException {
+    out.writeInt(ints.length);
+    for (int i : ints) {
+      out.writeInt(i);
+    }
+  }
+
+  private static int[] readInts(DataInputStream in) throws IOException {
+    int[] ints = new int[in.readInt()];
+    for (int i = 0; i < ints.length; i++) {
+      ints[i] = in.readInt();
+    }
+    return ints;
+  }
+
+  private void spill(Segment segment) throws IOException {
+    if (segment.fileOffset < 0) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+        writeInts(out, segment.checkpoint.checks);
+        writeInts(out, segment.checkpoint.notchCosts);
+        out.writeInt(segment.deltas.size());
+        for (Delta d : segment.deltas) {
+          writeInts(out, d.added);
+          writeInts(out, d.removed);
+          writeInts(out, d.notchCosts);
+        }
+      }
+
+      if (spillFile == null) {
+        spillPath = Files.createTempFile("HKSpoilerViewer-undo", ".bin");
+        spillPath.toFile().deleteOnExit();
+        spillFile = new RandomAccessFile(spillPath.toFile(), "rw");
+      }
+      long offset = allocate(bytes.size());
+      try {
+        spillFile.seek(offset);
+        spillFile.write(bytes.toByteArray());
+      } catch (IOException ex) {
+        free(offset, bytes.size());
+        throw ex;
+      }
+      segment.fileOffset = offset;
+      segment.fileLength = bytes.size();
+    }
+
+    segment.checkpoint = null;
+    segment.deltas = null;
+  }
+
+  // First fit among the free extents, else the end of the file.
+  private long allocate(int length) {
+    for (Map.Entry<Long, Integer> e : freeExtents.entrySet()) {
+      long offset = e.getKey();
+      int free = e.getValue();
+      if (free >= length) {
+        freeExtents.remove(offset);
+        if (free > length) {
+          freeExtents.put(offset + length, free - length);
+        }
+        return offset;
+      }
+    }
+
+    long offset = spillEnd;
+    spillEnd += length;
+    return offset;
+  }
+
+  private void free(long offset, int length) {
+    Map.Entry<Long, Integer> prev = freeExtents.floorEntry(offset);
+    if (prev != null && prev.getKey() + prev.getValue() == offset) {
+      freeExtents.remove(prev.getKey());
+      offset = prev.getKey();
+      length += prev.getValue();
+    }
+    Integer next = freeExtents.remove(offset + length);
+    if (next != null) {
+      length += next;
+    }
+
+    if (offset + length == spillEnd) {
+      spillEnd = offset;
+    } else {
+      freeExtents.put(offset, length);
+    }
+  }
+
+  // Frees the on-disk copy of a segment, before it changes or is dropped.
+  private void invalidate(Segment segment) {
+    if (segment.fileOffset >= 0) {
+      free(segment.fileOffset, segment.fileLength);
+      segment.fileOffset = -1;
+    }
+  }
+
+  private void pageIn(Segment segment) {
+    try {
+      byte[] bytes = new byte[segment.fileLength];
+      spillFile.seek(segment.fileOffset);
+      spillFile.readFully(bytes);
+
+      try (DataInputStream in =
+          new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+        segment.checkpoint = new Checkpoint(readInts(in), readInts(in));
+        int numDeltas = in.readInt();
+        segment.deltas = new ArrayList<>(numDeltas);
+        for (int i = 0; i < numDeltas; i++) {
+          segment.deltas.add(new Delta(readInts(in), readInts(in), readInts(in)));
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to read undo history", ex);
+    }
+  }
+
+  private Segment segment(int key) {
+    Segment segment = segments.get(key);
+    if (!segment.isResident()) {
+      pageIn(segment);
+    }
+    segment.lastUsed = ++clock;
+    return segment;
+  }
+
+  // Spills least recently used segments until within budget. The latest segment always stays.
+  private void enforceMemoryBudget() {
+    if (spillFailed) {
+      return;
+    }
+    long resident = segments.values().stream().filter(Segment::isResident)
+        .mapToLong(Segment::bytes).sum();
+    if (resident <= memoryBudget) {
+      return;
+    }
+
+    Segment latest = segments.lastEntry().getValue();
+    List<Segment> lru = new ArrayList<>();
+    segments.values().stream().filter(s -> s.isResident() && s != latest).forEach(lru::add);
+    lru.sort(Comparator.comparingLong(s -> s.lastUsed));
+
+    for (Segment s : lru) {
+      if (resident <= memoryBudget) {
+        break;
+      }
+
+      long bytes = s.bytes();
+      try {
+        spill(s);
+        resident -= bytes;
+      } catch (IOException ex) {
+        // Keep it in memory instead.
+        spillFailed = true;
+        errorHandler.accept(ex);
+        return;
+      }
+    }
+  }
+
+  private Snapshot get(int index) {
     Preconditions.checkElementIndex(index, size());
 
-    int key = checkpoints.headMap(index + 1).lastKey();
-    Checkpoint c = checkpoints.get(key).deepCopy();
-    deltas.get(key).subList(0, index - key).forEach(c::applyDelta);
-    return c;
+    int key = segments.floorKey(index);
+    Segment segment = segment(key);
+    Snapshot s = segment.checkpoint.unpack();
+    segment.deltas.subList(0, index - key).forEach(s::apply);
+    enforceMemoryBudget();
+    return s;
+  }
+
+  // The delta from record `index - 1` to record `index`.
+  private Delta deltaInto(int index) {
+    int key = segments.floorKey(index - 1);
+    return segment(key).deltas.get(index - 1 - key);
   }
 
   public int size() {
@@ -165,8 +549,33 @@ public final class UndoHistory {
 
   // Updates `ctx` to be as it was at the given record index.
   public void rewindTo(StateContext ctx, int index) {
-    Delta delta = Delta.compute(new StateContextView(ctx), get(index));
-    applyDelta(delta, ctx);
+    Preconditions.checkArgument(ctx == this.ctx, "Not the recorded context");
+    Preconditions.checkElementIndex(index, size());
+
+    // Walk the deltas from wherever `ctx` is now, unless that's more work than a full diff.
+    Changes walk = new Changes();
+    int from = position;
+    if (from < 0) {
+      walk.add(pending.toDelta().reverse());
+      from = nextIndex - 1;
+    }
+    for (int i = from; i > index && walk.effort() <= current.size(); i--) {
+      walk.add(deltaInto(i).reverse());
+    }
+    for (int i = from + 1; i <= index && walk.effort() <= current.size(); i++) {
+      walk.add(deltaInto(i));
+    }
+    Delta delta = walk.effort() <= current.size() ? walk.toDelta()
+        : Delta.compute(snapshotOf(ctx), get(index));
+    enforceMemoryBudget();
+
+    rewinding = true;
+    try {
+      applyDelta(delta, ctx);
+    } finally {
+      rewinding = false;
+    }
+    position = index;
   }
 
   // Removes all records > index.
@@ -175,61 +584,158 @@ public final class UndoHistory {
       return;
     }
 
-    current.reset(get(index));
-    nextIndex = index + 1;
+    // Make pending changes relative to the new latest record.
+    Snapshot target = get(index);
+    if (position != index) {
+      Delta delta = Delta.compute(target, position >= 0 ? get(position) : snapshotOf(ctx));
+      pending.clear();
+      pending.add(delta);
+    } else {
+      pending.clear();
+    }
+    if (position > index) {
+      position = -1;
+    }
 
-    checkpoints.tailMap(index + 1).clear();
-    checkpointIndex = checkpoints.lastKey();
+    current = target;
+    nextIndex = index + 1;
+    labels.subList(nextIndex, labels.size()).clear();
 
-    List<Delta> keyDeltas = deltas.get(checkpointIndex);
-    keyDeltas.subList(index - checkpointIndex, keyDeltas.size()).clear();
-    deltaSum = keyDeltas.stream().mapToInt(Delta::size).sum();
+    segments.tailMap(index + 1).values().forEach(this::invalidate);
+    segments.tailMap(index + 1).clear();
+    int key = segments.lastKey();
+    Segment segment = segment(key);
+    segment.deltas.subList(index - key, segment.deltas.size()).clear();
+    invalidate(segment);
+    deltaSum = segment.deltas.stream().mapToInt(Delta::size).sum();
 
     listeners.forEach(l -> l.truncated(nextIndex - 1));
   }
 
   public void reset(String label, StateContext ctx) {
+    close();
+    this.ctx = ctx;
+    ctx.checks().addListener(this);
+    ctx.notchCosts().addListener(this);
+
     labels.clear();
-    checkpoints.clear();
-    deltas.clear();
+    segments.clear();
+    freeExtents.clear();
+    spillEnd = 0;
+    spillFailed = false;
+    locations.clear();
+    items.clear();
+    costs.clear();
 
     labels.add(label);
-    current.reset(new StateContextView(ctx));
-    checkpoints.put(0, current.deepCopy());
-    checkpointIndex = 0;
+    current = snapshotOf(ctx);
+    segments.put(0, new Segment(Checkpoint.pack(current)));
     nextIndex = 1;
     deltaSum = 0;
+    pending.clear();
+    position = 0;
 
     listeners.forEach(l -> l.truncated(0));
   }
 
+  // Stops tracking changes to the context, and deletes the spill file.
+  public void close() {
+    if (ctx != null) {
+      ctx.checks().removeListener(this);
+      ctx.notchCosts().removeListener(this);
+      ctx = null;
+    }
+
+    if (spillFile != null) {
+      try {
+        spillFile.close();
+        Files.deleteIfExists(spillPath);
+      } catch (IOException ex) {
+        errorHandler.accept(ex);
+      } finally {
+        spillFile = null;
+        spillPath = null;
+      }
+    }
+  }
+
   // Records the current state, with the given label. Returns its index.
   public void record(String label, StateContext ctx) {
-    CheckpointInterface next = new StateContextView(ctx);
-    Delta delta = Delta.compute(current, next);
-    current.applyDelta(delta);
+    Preconditions.checkArgument(ctx == this.ctx, "Not the recorded context");
+
+    Delta delta = pending.toDelta();
+    pending.clear();
+    current.apply(delta);
 
+    Segment segment = segment(segments.lastKey());
+    segment.deltas.add(delta);
+    invalidate(segment);
     if (deltaSum + delta.size() > 2 * current.size()) {
       // Make a new checkpoint.
-      checkpoints.put(nextIndex, current.deepCopy());
-      checkpointIndex = nextIndex;
+      segments.put(nextIndex, new Segment(Checkpoint.pack(current)));
       deltaSum = 0;
     } else {
-      deltas.put(checkpointIndex, delta);
       deltaSum += delta.size();
     }
+    labels.add(label);
+    enforceMemoryBudget();
 
+    position = nextIndex;
     int copy = nextIndex++;
     listeners.forEach(l -> l.newSnapshot(copy));
   }
 
+  private void touched() {
+    if (!rewinding) {
+      position = -1;
+    }
+  }
+
+  @Override
+  public void checkAdded(ItemCheck check) {
+    pending.check(check.id().id(), ABSENT, pack(check));
+    touched();
+  }
+
+  @Override
+  public void checkRemoved(ItemCheck check) {
+    pending.check(check.id().id(), pack(check), ABSENT);
+    touched();
+  }
+
+  @Override
+  public void checkReplaced(ItemCheck before, ItemCheck after) {
+    checkRemoved(before);
+    checkAdded(after);
+  }
+
+  @Override
+  public void notchCostsChanged(ImmutableList<Integer> before, ImmutableList<Integer> after) {
+    for (int i = 0; i < Math.min(before.size(), after.size()); i++) {
+      if (before.get(i).intValue() != after.get(i).intValue()) {
+        pending.notchCost(i, before.get(i), after.get(i));
+      }
+    }
+    touched();
+  }
+
   private void applyDelta(Delta delta, StateContext ctx) {
-    ctx.checks().removeMultiple(delta.removedCheckIds());
-    ctx.checks().addMultiple(delta.newChecks());
+    ImmutableSet.Builder<CheckId> removed = ImmutableSet.builder();
+    for (int i = 0; i < delta.removed.length; i += CHECK_INTS) {
+      removed.add(CheckId.of(delta.removed[i]));
+    }
+    ImmutableSet.Builder<ItemCheck> added = ImmutableSet.builder();
+    for (int i = 0; i < delta.added.length; i += CHECK_INTS) {
+      added.add(unpack(delta.added, i));
+    }
+    ctx.checks().removeMultiple(removed.build());
+    ctx.checks().addMultiple(added.build());
 
-    if (!delta.updatedNotchCosts().isEmpty()) {
+    if (delta.notchCosts.length > 0) {
       List<Integer> updatedNotchCosts = new ArrayList<>(ctx.notchCosts().costs());
-      delta.updatedNotchCosts().forEach(updatedNotchCosts::set);
+      for (int i = 0; i < delta.notchCosts.length; i += NOTCH_INTS) {
+        updatedNotchCosts.set(delta.notchCosts[i], delta.notchCosts[i + 2]);
+      }
       ctx.notchCosts().setCosts(updatedNotchCosts);
     }
   }
@@ -0,0 +1,685 @@
+package hollow.knight.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.ItemChecks;
+import hollow.knight.logic.LogicEdits;
+import hollow.knight.logic.NotchCosts;
+import hollow.knight.logic.ParseException;
+import hollow.knight.logic.StateContext;
+
+/**
+ * Journals edits in the background, so a crash loses little work.
+ *
+ * <p>
+ * Starting from a baseline of the full save data, every check, notch cost and logic edit, and
+ * every replaced section, is appended to a journal as a single small record. A background thread
+ * flushes records in batches, with one fsync per batch, and compacts them into a full .hks
+ * snapshot once the journal outgrows it. Recovery replays the journal onto the snapshot. Files
+ * holding edits made since the last baseline outlive close(), so they can be recovered later.
+ *
+ * <p>
+ * Each running instance locks its own numbered pair of files, so concurrent instances never
+ * overwrite or delete each other's work.
+ */
+public final class Autosave
+    implements ItemChecks.Listener, NotchCosts.Listener, LogicEdits.Listener {
+  private static final byte[] JOURNAL_MAGIC = {'H', 'K', 'S', 'J'};
+  private static final long MIN_COMPACTION_BYTES = 1 << 20;
+  private static final long FLUSH_DELAY_MILLIS = 1000;
+  private static final int MAX_INSTANCES = 8;
+  // Identifies which snapshot a journal applies to, in case of a crash during compaction.
+  private static final String GENERATION_SECTION = "AutosaveGeneration";
+
+  private static final byte SECTION_RECORD = 0;
+  private static final byte CHECK_PUT_RECORD = 1;
+  private static final byte CHECK_REMOVED_RECORD = 2;
+  private static final byte LOGIC_EDITED_RECORD = 3;
+
+  private final Consumer<Exception> errorHandler;
+  // Null if no slot could be locked, in which case nothing is saved.
+  private final FileLock lock;
+  private final Path snapshotPath;
+  private final Path journalPath;
+  private final Path recoveredPath;
+
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Autosave");
+        t.setDaemon(true);
+        return t;
+      });
+  private final ConcurrentLinkedQueue<Update> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  // Accessed only by the UI thread.
+  private StateContext ctx = null;
+
+  // Accessed only by the executor.
+  private final Contents contents = new Contents();
+  private boolean hasBaseline = false;
+  // True if edits were made since the last baseline.
+  private boolean unsaved = false;
+  private boolean closed = false;
+  private DataOutputStream journal = null;
+  private FileOutputStream journalFile = null;
+  private long snapshotBytes = 0;
+  private boolean failing = false;
+
+  // 'errorHandler' is called, from any thread, when autosaving fails.
+  public Autosave(Path dir, Consumer<Exception> errorHandler) {
+    this.errorHandler = errorHandler;
+
+    FileLock slotLock = null;
+    int slot = 0;
+    try {
+      Files.createDirectories(dir);
+      // Prefer a slot holding a crashed session's work, so it can be offered for recovery.
+      for (int pass = 0; pass < 2 && slotLock == null; pass++) {
+        for (slot = 0; slot < MAX_INSTANCES; slot++) {
+          if (pass == 0 && !Files.exists(snapshotPath(dir, slot))
+              && !Files.exists(journalPath(dir, slot))) {
+            continue;
+          }
+          slotLock = tryLock(dir.resolve("autosave-" + slot + ".lock"));
+          if (slotLock != null) {
+            break;
+          }
+        }
+      }
+      if (slotLock == null) {
+        throw new IOException("Autosave is disabled: " + MAX_INSTANCES + " instances are running");
+      }
+    } catch (IOException ex) {
+      errorHandler.accept(ex);
+    }
+
+    this.lock = slotLock;
+    this.snapshotPath = snapshotPath(dir, slot);
+    this.journalPath = journalPath(dir, slot);
+    this.recoveredPath = dir.resolve("autosave-" + slot + "-recovered.hks");
+  }
+
+  private static Path snapshotPath(Path dir, int slot) {
+    return dir.resolve("autosave-" + slot + ".hks");
+  }
+
+  private static Path journalPath(Path dir, int slot) {
+    return dir.resolve("autosave-" + slot + ".hksj");
+  }
+
+  // Returns null if another instance holds the lock.
+  private static FileLock tryLock(Path path) throws IOException {
+    FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      FileLock lock = channel.tryLock();
+      if (lock != null) {
+        return lock;
+      }
+    } catch (OverlappingFileLockException ex) {
+      // Held by this process.
+    } catch (IOException ex) {
+      channel.close();
+      throw ex;
+    }
+    channel.close();
+    return null;
+  }
+
+  // True if a previous session which crashed in this instance's slot left work behind.
+  public boolean hasRecoveryData() {
+    return lock != null && (Files.exists(snapshotPath) || Files.exists(journalPath));
+  }
+
+  // Replays the journal onto its snapshot, and returns the path of the merged .hks. Must be called
+  // before start().
+  public Path recover() throws ParseException {
+    try {
+      Contents recovered = new Contents();
+      long generation = -1;
+      if (Files.exists(snapshotPath)) {
+        for (Map.Entry<String, byte[]> e : HksFormat.readEncodedSections(snapshotPath)
+            .entrySet()) {
+          if (e.getKey().equals(GENERATION_SECTION)) {
+            generation = HksFormat.decodeSection(e.getKey(), e.getValue()).getAsLong();
+          } else {
+            recovered.putEncodedSection(e.getKey(), e.getValue());
+          }
+        }
+      }
+      if (Files.exists(journalPath)) {
+        readJournal(journalPath, generation, recovered);
+      }
+
+      HksFormat.writeEncodedSections(recoveredPath.toString(), recovered.encode());
+      return recoveredPath;
+    } catch (IOException ex) {
+      throw new ParseException("Failed to recover autosave: " + ex.getMessage(), ex);
+    }
+  }
+
+  private static void readJournal(Path path, long generation, Contents contents)
+      throws IOException, ParseException {
+    try (DataInputStream in =
+        new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)))) {
+      byte[] magic = new byte[JOURNAL_MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(magic, JOURNAL_MAGIC)) {
+        throw new IOException("Not an autosave journal: " + path);
+      }
+      if (in.readLong() != generation) {
+        // Already compacted into the snapshot.
+        return;
+      }
+
+      while (true) {
+        Record record;
+        try {
+          record = readRecord(in);
+        } catch (EOFException ex) {
+          // A crash mid-write leaves a truncated final record, which is dropped.
+          return;
+        }
+        record.applyTo(contents);
+      }
+    }
+  }
+
+  // Journals edits to 'ctx' from now on, starting from 'saveData', its full save data, which counts
+  // as saved. Subtrees of 'saveData' must not be modified afterwards. Must be called on the UI
+  // thread.
+  public void start(StateContext ctx, JsonObject saveData) {
+    stopListening();
+    this.ctx = ctx;
+    if (saveData.has(ItemChecks.SAVE_NAME)) {
+      ctx.checks().addListener(this);
+    }
+    if (saveData.has(ctx.notchCosts().saveName())) {
+      ctx.notchCosts().addListener(this);
+    }
+    if (saveData.has(LogicEdits.SAVE_NAME)) {
+      ctx.logicEdits().addListener(this);
+    }
+    enqueue(new Baseline(saveData));
+  }
+
+  private void stopListening() {
+    if (ctx != null) {
+      ctx.checks().removeListener(this);
+      ctx.notchCosts().removeListener(this);
+      ctx.logicEdits().removeListener(this);
+      ctx = null;
+    }
+  }
+
+  // Journals a replaced section, for state without finer-grained events. Sections whose encoding
+  // didn't change aren't written. Must be called on the UI thread, after start().
+  public void sectionChanged(String name, JsonElement section) {
+    enqueue(new SectionRecord(name, section));
+  }
+
+  @Override
+  public void checkAdded(ItemCheck check) {
+    enqueue(new CheckPutRecord(check.toJson()));
+  }
+
+  @Override
+  public void checkRemoved(ItemCheck check) {
+    enqueue(new CheckRemovedRecord(check.id().id()));
+  }
+
+  @Override
+  public void checkReplaced(ItemCheck before, ItemCheck after) {
+    if (!before.id().equals(after.id())) {
+      checkRemoved(before);
+    }
+    checkAdded(after);
+  }
+
+  @Override
+  public void multipleChecksReplaced(ImmutableMap<ItemCheck, ItemCheck> replacements) {
+    // Ids may be reassigned among the replacements, so remove everything before adding.
+    replacements.keySet().forEach(this::checkRemoved);
+    replacements.values().forEach(this::checkAdded);
+  }
+
+  @Override
+  public void notchCostsChanged(ImmutableList<Integer> before, ImmutableList<Integer> after) {
+    sectionChanged(ctx.notchCosts().saveName(), ctx.notchCosts().save());
+  }
+
+  @Override
+  public void logicEdited(String name) {
+    LogicEdits edits = ctx.logicEdits();
+    enqueue(new LogicEditedRecord(name, edits.isNew(name), edits.editedLogic(name)));
+  }
+
+  private void enqueue(Update update) {
+    if (lock == null) {
+      return;
+    }
+
+    pending.add(update);
+    if (flushScheduled.compareAndSet(false, true)) {
+      executor.schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void flush() {
+    flushScheduled.set(false);
+    if (closed) {
+      return;
+    }
+
+    List<Record> changed = new ArrayList<>();
+    try {
+      for (Update u = pending.poll(); u != null; u = pending.poll()) {
+        if (u instanceof Baseline) {
+          // Start from a fresh snapshot, discarding anything left by the last one.
+          u.applyTo(contents);
+          changed.clear();
+          closeJournal();
+          hasBaseline = true;
+          unsaved = false;
+        } else if (u.applyTo(contents)) {
+          changed.add((Record) u);
+          unsaved = true;
+        }
+      }
+    } catch (IOException | ParseException | RuntimeException ex) {
+      // 'contents' may be inconsistent, so nothing more is saved until the next baseline.
+      hasBaseline = false;
+      fail(ex);
+      return;
+    }
+    if (!hasBaseline || (journal != null && changed.isEmpty())) {
+      return;
+    }
+
+    try {
+      if (journal == null) {
+        compact();
+      } else {
+        for (Record r : changed) {
+          r.writeTo(journal);
+        }
+        journal.flush();
+        journalFile.getFD().sync();
+        if (journal.size() > Math.max(snapshotBytes, MIN_COMPACTION_BYTES)) {
+          compact();
+        }
+      }
+      failing = false;
+    } catch (IOException | RuntimeException ex) {
+      // 'contents' is intact, so the next flush starts over with a full snapshot.
+      fail(ex);
+    }
+  }
+
+  // Reports only the first of a run of failures.
+  private void fail(Exception ex) {
+    try {
+      closeJournal();
+    } catch (IOException closeEx) {
+      ex.addSuppressed(closeEx);
+    }
+    if (!failing) {
+      failing = true;
+      errorHandler.accept(ex);
+    }
+  }
+
+  private void compact() throws IOException {
+    closeJournal();
+
+    long generation = System.currentTimeMillis();
+    Map<String, byte[]> sections = contents.encode();
+    sections.put(GENERATION_SECTION, HksFormat.encodeSection(new JsonPrimitive(generation)));
+
+    HksFormat.writeEncodedSections(snapshotPath.toString(), sections);
+    snapshotBytes = Files.size(snapshotPath);
+
+    journalFile = new FileOutputStream(journalPath.toFile());
+    journal = new DataOutputStream(journalFile);
+    journal.write(JOURNAL_MAGIC);
+    journal.writeLong(generation);
+    journal.flush();
+    journalFile.getFD().sync();
+  }
+
+  private void closeJournal() throws IOException {
+    if (journal != null) {
+      DataOutputStream toClose = journal;
+      journal = null;
+      journalFile = null;
+      toClose.close();
+    }
+  }
+
+  // Stops autosaving, after writing pending edits. This instance's autosave files are deleted
+  // unless they hold edits made since the last baseline. Blocks until writes finish. Must be called
+  // on the UI thread.
+  public void close() {
+    stopListening();
+    if (lock != null) {
+      executor.execute(() -> {
+        flush();
+        closed = true;
+        try {
+          closeJournal();
+          if (!unsaved) {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(snapshotPath);
+          }
+          Files.deleteIfExists(recoveredPath);
+          lock.channel().close();
+        } catch (IOException ex) {
+          errorHandler.accept(ex);
+        }
+      });
+    }
+    executor.shutdown();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // The save data as of the last applied record. Checks and logic edits are kept decoded, so
+  // records of single edits can update them.
+  private static final class Contents {
+    private final Map<String, byte[]> sections = new LinkedHashMap<>();
+    // Check JSON by id, or null if there's no checks section.
+    private TreeMap<Integer, JsonObject> checks = null;
+    // Both null if there's no logic edits section.
+    private Set<String> addedWaypoints = null;
+    private Map<String, String> logicEdits = null;
+
+    void clear() {
+      sections.clear();
+      checks = null;
+      addedWaypoints = null;
+      logicEdits = null;
+    }
+
+    // Returns false if the section is unchanged.
+    boolean putSection(String name, JsonElement json) throws IOException, ParseException {
+      if (name.equals(ItemChecks.SAVE_NAME)) {
+        checks = new TreeMap<>();
+        for (JsonElement e : json.getAsJsonObject().get("checks").getAsJsonArray()) {
+          putCheck(e.getAsJsonObject());
+        }
+        return true;
+      } else if (name.equals(LogicEdits.SAVE_NAME)) {
+        JsonObject obj = json.getAsJsonObject();
+        addedWaypoints = new LinkedHashSet<>();
+        logicEdits = new LinkedHashMap<>();
+        obj.get("addedWaypoints").getAsJsonArray()
+            .forEach(e -> addedWaypoints.add(e.getAsString()));
+        obj.get("logicEdits").getAsJsonObject().entrySet()
+            .forEach(e -> logicEdits.put(e.getKey(), e.getValue().getAsString()));
+        return true;
+      }
+      return putEncodedSection(name, HksFormat.encodeSection(json));
+    }
+
+    // Returns false if the section is unchanged.
+    boolean putEncodedSection(String name, byte[] blob) throws IOException, ParseException {
+      if (name.equals(ItemChecks.SAVE_NAME) || name.equals(LogicEdits.SAVE_NAME)) {
+        return putSection(name, HksFormat.decodeSection(name, blob));
+      }
+      return !Arrays.equals(sections.put(name, blob), blob);
+    }
+
+    void putCheck(JsonObject check) {
+      if (checks != null) {
+        checks.put(check.get("id").getAsInt(), check);
+      }
+    }
+
+    void removeCheck(int id) {
+      if (checks != null) {
+        checks.remove(id);
+      }
+    }
+
+    void editLogic(String name, boolean isNew, String logic) {
+      if (logicEdits == null) {
+        return;
+      }
+
+      if (isNew) {
+        addedWaypoints.add(name);
+      } else {
+        addedWaypoints.remove(name);
+      }
+      if (logic != null) {
+        logicEdits.put(name, logic);
+      } else {
+        logicEdits.remove(name);
+      }
+    }
+
+    Map<String, byte[]> encode() throws IOException {
+      Map<String, byte[]> encoded = new LinkedHashMap<>(sections);
+      if (checks != null) {
+        JsonArray arr = new JsonArray();
+        checks.values().forEach(arr::add);
+        JsonObject obj = new JsonObject();
+        obj.add("checks", arr);
+        encoded.put(ItemChecks.SAVE_NAME, HksFormat.encodeSection(obj));
+      }
+      if (logicEdits != null) {
+        JsonArray waypoints = new JsonArray();
+        addedWaypoints.forEach(waypoints::add);
+        JsonObject edits = new JsonObject();
+        logicEdits.forEach(edits::addProperty);
+        JsonObject obj = new JsonObject();
+        obj.add("addedWaypoints", waypoints);
+        obj.add("logicEdits", edits);
+        encoded.put(LogicEdits.SAVE_NAME, HksFormat.encodeSection(obj));
+      }
+      return encoded;
+    }
+  }
+
+  private interface Update {
+    // Returns false if 'contents' is unchanged, so the update needn't be journaled.
+    boolean applyTo(Contents contents) throws IOException, ParseException;
+  }
+
+  // An update which can be journaled.
+  private interface Record extends Update {
+    void writeTo(DataOutputStream out) throws IOException;
+  }
+
+  private static Record readRecord(DataInputStream in) throws IOException, ParseException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case SECTION_RECORD:
+        String name = HksFormat.readString(in);
+        return new SectionRecord(name, readBlob(in));
+      case CHECK_PUT_RECORD:
+        return new CheckPutRecord(
+            HksFormat.decodeSection("check", readBlob(in)).getAsJsonObject());
+      case CHECK_REMOVED_RECORD:
+        return new CheckRemovedRecord(in.readInt());
+      case LOGIC_EDITED_RECORD:
+        String logicName = HksFormat.readString(in);
+        boolean isNew = in.readBoolean();
+        String logic = in.readBoolean() ? HksFormat.readString(in) : null;
+        return new LogicEditedRecord(logicName, isNew, logic);
+      default:
+        throw new ParseException("Unknown autosave record: " + tag);
+    }
+  }
+
+  private static byte[] readBlob(DataInputStream in) throws IOException {
+    byte[] blob = new byte[in.readInt()];
+    in.readFully(blob);
+    return blob;
+  }
+
+  private static void writeBlob(DataOutputStream out, byte[] blob) throws IOException {
+    out.writeInt(blob.length);
+    out.write(blob);
+  }
+
+  // The full save data, which replaces everything before it. Written only by compaction.
+  private static final class Baseline implements Update {
+    private final JsonObject saveData;
+
+    Baseline(JsonObject saveData) {
+      this.saveData = saveData;
+    }
+
+    @Override
+    public boolean applyTo(Contents contents) throws IOException, ParseException {
+      contents.clear();
+      for (Map.Entry<String, JsonElement> e : saveData.entrySet()) {
+        contents.putSection(e.getKey(), e.getValue());
+      }
+      return true;
+    }
+  }
+
+  private static final class SectionRecord implements Record {
+    private final String name;
+    private JsonElement json;
+    private byte[] blob = null;
+
+    SectionRecord(String name, JsonElement json) {
+      this.name = name;
+      this.json = json;
+    }
+
+    SectionRecord(String name, byte[] blob) {
+      this.name = name;
+      this.blob = blob;
+    }
+
+    // Encoded lazily, on the executor.
+    private byte[] blob() throws IOException {
+      if (blob == null) {
+        blob = HksFormat.encodeSection(json);
+        json = null;
+      }
+      return blob;
+    }
+
+    @Override
+    public boolean applyTo(Contents contents) throws IOException, ParseException {
+      return contents.putEncodedSection(name, blob());
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+      out.writeByte(SECTION_RECORD);
+      HksFormat.writeString(out, name);
+      writeBlob(out, blob());
+    }
+  }
+
+  private static final class CheckPutRecord implements Record {
+    private final JsonObject check;
+
+    CheckPutRecord(JsonObject check) {
+      this.check = check;
+    }
+
+    @Override
+    public boolean applyTo(Contents contents) {
+      contents.putCheck(check);
+      return true;
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+      out.writeByte(CHECK_PUT_RECORD);
+      writeBlob(out, HksFormat.encodeSection(check));
+    }
+  }
+
+  private static final class CheckRemovedRecord implements Record {
+    private final int id;
+
+    CheckRemovedRecord(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public boolean applyTo(Contents contents) {
+      contents.removeCheck(id);
+      return true;
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+      out.writeByte(CHECK_REMOVED_RECORD);
+      out.writeInt(id);
+    }
+  }
+
+  private static final class LogicEditedRecord implements Record {
+    private final String name;
+    private final boolean isNew;
+    // Null if the edit was reverted.
+    private final String logic;
+
+    LogicEditedRecord(String name, boolean isNew, String logic) {
+      this.name = name;
+      this.isNew = isNew;
+      this.logic = logic;
+    }
+
+    @Override
+    public boolean applyTo(Contents contents) {
+      contents.editLogic(name, isNew, logic);
+      return true;
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+      out.writeByte(LOGIC_EDITED_RECORD);
+      HksFormat.writeString(out, name);
+      out.writeBoolean(isNew);
+      out.writeBoolean(logic != null);
+      if (logic != null) {
+        HksFormat.writeString(out, logic);
+      }
+    }
+  }
+}
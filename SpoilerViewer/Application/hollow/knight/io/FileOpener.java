@@ -24,8 +24,8 @@ public final class FileOpener {
     boolean isHKS = path.toString().endsWith(".hks");
     String parent = path.getParent().toAbsolutePath().toString();
 
-    JsonObject saveData = new JsonObject();
-    JsonObject rawSpoiler = JsonUtil.loadPath(path).getAsJsonObject();
+    HksFormat.Sections saveData = HksFormat.Sections.empty();
+    JsonObject rawSpoiler = null;
     JsonObject rawICDL = null;
 
     Path darknessPath = Paths.get(parent, "DarknessSpoiler.json");
@@ -33,7 +33,7 @@ public final class FileOpener {
 
     Version version = Main.version();
     if (isHKS) {
-      saveData = rawSpoiler;
+      saveData = HksFormat.read(path);
       rawSpoiler = saveData.get("RawSpoiler").getAsJsonObject();
 
       version = Version.parse(saveData.get("Version").getAsString());
@@ -48,8 +48,10 @@ public final class FileOpener {
         darknessJson = saveData.get("RawDarkness").getAsJsonObject();
       }
     } else if (path.endsWith("ctx.json")) {
+      rawSpoiler = JsonUtil.loadPath(path).getAsJsonObject();
       rawICDL = JsonUtil.loadPath(Paths.get(parent, "ic.json")).getAsJsonObject();
     } else {
+      rawSpoiler = JsonUtil.loadPath(path).getAsJsonObject();
       if (new File(darknessPath.toString()).exists()) {
         darknessJson =
             JsonUtil.loadPath(Paths.get(parent, "DarknessSpoiler.json")).getAsJsonObject();
@@ -58,12 +60,12 @@ public final class FileOpener {
 
     StateContext newCtx = StateContext.parse(isHKS, rawSpoiler, rawICDL, darknessJson);
     if (rawICDL != null) {
-      newCtx.loadMutables(saveData);
+      newCtx.loadMutables(saveData::get);
     }
 
-    Version finalVersion = version;
-    JsonObject finalSaveData = saveData;
-    saveInterfaces.forEach(i -> i.open(finalVersion, newCtx, finalSaveData.get(i.saveName())));
+    for (SaveInterface i : saveInterfaces) {
+      i.open(version, newCtx, saveData.get(i.saveName()));
+    }
 
     return newCtx;
   }
@@ -0,0 +1,326 @@
+package hollow.knight.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import hollow.knight.logic.ParseException;
+
+/**
+ * The binary .hks container.
+ *
+ * <p>
+ * Each top-level member of the save data is stored as its own compressed section, with a string
+ * table so repeated keys and values are written once. Sections are only decoded when first read.
+ * Saves written as plain JSON are still readable.
+ */
+public final class HksFormat {
+  private static final byte[] MAGIC = {'H', 'K', 'S', 'B'};
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int TAG_NULL = 0;
+  private static final int TAG_FALSE = 1;
+  private static final int TAG_TRUE = 2;
+  private static final int TAG_NUMBER = 3;
+  private static final int TAG_STRING = 4;
+  private static final int TAG_ARRAY = 5;
+  private static final int TAG_OBJECT = 6;
+
+  /** The top-level members of a save file, decoded on demand. */
+  public static final class Sections {
+    private final ImmutableMap<String, byte[]> encoded;
+    private final Map<String, JsonElement> decoded = new HashMap<>();
+
+    private Sections(ImmutableMap<String, byte[]> encoded, Map<String, JsonElement> decoded) {
+      this.encoded = encoded;
+      this.decoded.putAll(decoded);
+    }
+
+    public static Sections empty() {
+      return of(new JsonObject());
+    }
+
+    public static Sections of(JsonObject json) {
+      Map<String, JsonElement> decoded = new HashMap<>();
+      json.entrySet().forEach(e -> decoded.put(e.getKey(), e.getValue()));
+      return new Sections(ImmutableMap.of(), decoded);
+    }
+
+    public boolean has(String name) {
+      return decoded.containsKey(name) || encoded.containsKey(name);
+    }
+
+    // Returns null if the section is absent.
+    public JsonElement get(String name) throws ParseException {
+      JsonElement json = decoded.get(name);
+      if (json == null && encoded.containsKey(name)) {
+        json = decodeSection(name, encoded.get(name));
+        decoded.put(name, json);
+      }
+      return json;
+    }
+  }
+
+  public static boolean isBinary(Path path) throws IOException {
+    byte[] header = new byte[MAGIC.length];
+    try (InputStream is = Files.newInputStream(path)) {
+      int n = 0;
+      while (n < header.length) {
+        int r = is.read(header, n, header.length - n);
+        if (r < 0) {
+          return false;
+        }
+        n += r;
+      }
+    }
+    return Arrays.equals(header, MAGIC);
+  }
+
+  public static Sections read(Path path) throws ParseException {
+    try {
+      if (!isBinary(path)) {
+        return Sections.of(JsonUtil.loadPath(path).getAsJsonObject());
+      }
+
+      return new Sections(readEncodedSections(path), ImmutableMap.of());
+    } catch (IOException | RuntimeException ex) {
+      throw new ParseException("Failed to load " + path, ex);
+    }
+  }
+
+  // Reads the still-encoded sections of a binary container.
+  static ImmutableMap<String, byte[]> readEncodedSections(Path path)
+      throws IOException, ParseException {
+    try (DataInputStream in =
+        new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)))) {
+      in.readFully(new byte[MAGIC.length]);
+      int formatVersion = in.readInt();
+      if (formatVersion > FORMAT_VERSION) {
+        throw new ParseException("Unsupported .hks format version " + formatVersion);
+      }
+
+      int numSections = in.readInt();
+      List<String> names = new ArrayList<>();
+      List<Integer> lengths = new ArrayList<>();
+      for (int i = 0; i < numSections; i++) {
+        names.add(readString(in));
+        lengths.add(in.readInt());
+      }
+
+      ImmutableMap.Builder<String, byte[]> encoded = ImmutableMap.builder();
+      for (int i = 0; i < numSections; i++) {
+        byte[] blob = new byte[lengths.get(i)];
+        in.readFully(blob);
+        encoded.put(names.get(i), blob);
+      }
+      return encoded.build();
+    }
+  }
+
+  public static void write(String path, JsonObject saveData) throws IOException {
+    Map<String, byte[]> sections = new LinkedHashMap<>();
+    for (Map.Entry<String, JsonElement> e : saveData.entrySet()) {
+      sections.put(e.getKey(), encodeSection(e.getValue()));
+    }
+    writeEncodedSections(path, sections);
+  }
+
+  // Writes to a temporary file first, and moves it over 'path' once complete, so a failed or
+  // interrupted write never leaves a truncated save behind.
+  static void writeEncodedSections(String path, Map<String, byte[]> sections) throws IOException {
+    Path target = Paths.get(path).toAbsolutePath();
+    Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+    try {
+      FileOutputStream file = new FileOutputStream(tmp.toFile());
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+        out.write(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(sections.size());
+        for (Map.Entry<String, byte[]> e : sections.entrySet()) {
+          writeString(out, e.getKey());
+          out.writeInt(e.getValue().length);
+        }
+        for (byte[] blob : sections.values()) {
+          out.write(blob);
+        }
+        out.flush();
+        file.getFD().sync();
+      }
+
+      try {
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static final class Encoder {
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(body);
+
+    private void writeIndex(String s) throws IOException {
+      Integer index = strings.get(s);
+      if (index == null) {
+        index = strings.size();
+        strings.put(s, index);
+      }
+      out.writeInt(index);
+    }
+
+    void encode(JsonElement json) throws IOException {
+      if (json.isJsonNull()) {
+        out.writeByte(TAG_NULL);
+      } else if (json.isJsonArray()) {
+        JsonArray arr = json.getAsJsonArray();
+        out.writeByte(TAG_ARRAY);
+        out.writeInt(arr.size());
+        for (JsonElement elem : arr) {
+          encode(elem);
+        }
+      } else if (json.isJsonObject()) {
+        JsonObject obj = json.getAsJsonObject();
+        out.writeByte(TAG_OBJECT);
+        out.writeInt(obj.size());
+        for (Map.Entry<String, JsonElement> e : obj.entrySet()) {
+          writeIndex(e.getKey());
+          encode(e.getValue());
+        }
+      } else {
+        JsonPrimitive p = json.getAsJsonPrimitive();
+        if (p.isBoolean()) {
+          out.writeByte(p.getAsBoolean() ? TAG_TRUE : TAG_FALSE);
+        } else if (p.isNumber()) {
+          out.writeByte(TAG_NUMBER);
+          writeIndex(p.getAsNumber().toString());
+        } else {
+          out.writeByte(TAG_STRING);
+          writeIndex(p.getAsString());
+        }
+      }
+    }
+
+    void finish(OutputStream os) throws IOException {
+      DataOutputStream header = new DataOutputStream(os);
+      header.writeInt(strings.size());
+      for (String s : strings.keySet()) {
+        writeString(header, s);
+      }
+      body.writeTo(header);
+      header.flush();
+    }
+  }
+
+  private static final class Decoder {
+    private final DataInputStream in;
+    private final String[] strings;
+
+    Decoder(DataInputStream in) throws IOException {
+      this.in = in;
+      this.strings = new String[in.readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = readString(in);
+      }
+    }
+
+    JsonElement decode() throws IOException, ParseException {
+      int tag = in.readByte();
+      switch (tag) {
+        case TAG_NULL:
+          return JsonNull.INSTANCE;
+        case TAG_FALSE:
+          return new JsonPrimitive(false);
+        case TAG_TRUE:
+          return new JsonPrimitive(true);
+        case TAG_NUMBER:
+          return new JsonPrimitive(new LazilyParsedNumber(strings[in.readInt()]));
+        case TAG_STRING:
+          return new JsonPrimitive(strings[in.readInt()]);
+        case TAG_ARRAY: {
+          int size = in.readInt();
+          JsonArray arr = new JsonArray(size);
+          for (int i = 0; i < size; i++) {
+            arr.add(decode());
+          }
+          return arr;
+        }
+        case TAG_OBJECT: {
+          int size = in.readInt();
+          JsonObject obj = new JsonObject();
+          for (int i = 0; i < size; i++) {
+            String key = strings[in.readInt()];
+            obj.add(key, decode());
+          }
+          return obj;
+        }
+        default:
+          throw new ParseException("Unknown tag: " + tag);
+      }
+    }
+  }
+
+  static byte[] encodeSection(JsonElement json) throws IOException {
+    Encoder encoder = new Encoder();
+    encoder.encode(json);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DeflaterOutputStream os = new DeflaterOutputStream(bytes)) {
+      encoder.finish(os);
+    }
+    return bytes.toByteArray();
+  }
+
+  static JsonElement decodeSection(String name, byte[] blob) throws ParseException {
+    try (DataInputStream in =
+        new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(blob)))) {
+      return new Decoder(in).decode();
+    } catch (IOException | RuntimeException ex) {
+      throw new ParseException("Failed to decode section " + name, ex);
+    }
+  }
+
+  // Unlike writeUTF, not limited to 64K.
+  static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private HksFormat() {}
+}
@@ -1,16 +1,27 @@
 package hollow.knight.io;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.internal.LazilyParsedNumber;
 import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import hollow.knight.logic.ParseException;
 
@@ -25,17 +36,60 @@ public final class JsonUtil {
   }
 
   public static JsonElement loadPath(Path path) throws ParseException {
-    try {
-      List<String> lines = Files.readAllLines(path);
-      String txt = lines.stream().collect(Collectors.joining("\n"));
-      return JsonParser.parseString(txt);
-    } catch (IOException ex) {
+    // Parse straight from the file rather than materializing its text first; spoilers can be large.
+    try (Reader r = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        JsonReader reader = new JsonReader(r)) {
+      reader.setLenient(true);
+      JsonElement json = read(reader, new HashMap<>());
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        throw new JsonSyntaxException("Trailing data after the document");
+      }
+      return json;
+    } catch (IOException | JsonParseException | IllegalStateException ex) {
       throw new ParseException("Failed to load " + path, ex);
     }
   }
 
+  // Builds the tree token by token. Spoilers repeat the same keys, type names and terms thousands
+  // of times, so every string is shared through 'strings' rather than held once per occurrence.
+  private static JsonElement read(JsonReader reader, Map<String, String> strings)
+      throws IOException {
+    switch (reader.peek()) {
+      case BEGIN_OBJECT:
+        JsonObject obj = new JsonObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String name = reader.nextName();
+          obj.add(strings.computeIfAbsent(name, s -> s), read(reader, strings));
+        }
+        reader.endObject();
+        return obj;
+      case BEGIN_ARRAY:
+        JsonArray arr = new JsonArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          arr.add(read(reader, strings));
+        }
+        reader.endArray();
+        return arr;
+      case STRING:
+        String value = reader.nextString();
+        return new JsonPrimitive(strings.computeIfAbsent(value, s -> s));
+      case NUMBER:
+        return new JsonPrimitive(new LazilyParsedNumber(reader.nextString()));
+      case BOOLEAN:
+        return new JsonPrimitive(reader.nextBoolean());
+      case NULL:
+        reader.nextNull();
+        return JsonNull.INSTANCE;
+      default:
+        throw new JsonSyntaxException("Unexpected " + reader.peek() + " at " + reader.getPath());
+    }
+  }
+
   public static void writeJson(String path, JsonElement json) throws IOException {
-    try (JsonWriter w = new JsonWriter(new FileWriter(path.toString()))) {
+    try (JsonWriter w = new JsonWriter(
+        Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8))) {
       w.setIndent("  ");
       Streams.write(json, w);
     }
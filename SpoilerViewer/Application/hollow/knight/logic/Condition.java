@@ -0,0 +1,153 @@
+package hollow.knight.logic;
+
+import java.util.Arrays;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A compiled logic expression.
+ *
+ * <p>
+ * Expressions are flattened into a postfix program of packed int instructions, which index into a
+ * constant pool of Terms and Variables. Evaluation is a single pass over the program with a fixed
+ * size value stack, and never touches the original logic string.
+ */
+public final class Condition {
+
+  /** Source of term values for evaluating a Condition. */
+  public interface Context {
+    StateContext ctx();
+
+    int get(Term term);
+  }
+
+  /** A computed value inside a logic expression, such as '$NotchCost[1,2]'. */
+  public interface Variable {
+    int value(Context ctx);
+  }
+
+  static final int OP_BITS = 4;
+  static final int OP_MASK = (1 << OP_BITS) - 1;
+
+  static final int OP_TERM = 0;
+  static final int OP_CONST = 1;
+  static final int OP_VAR = 2;
+  static final int OP_AND = 3;
+  static final int OP_OR = 4;
+  static final int OP_GT = 5;
+  static final int OP_LT = 6;
+  static final int OP_EQ = 7;
+
+  private static final Condition TRUE =
+      new Condition(new int[] {(1 << OP_BITS) | OP_CONST}, new Term[0], new Variable[0], 1);
+  private static final Condition FALSE =
+      new Condition(new int[] {OP_CONST}, new Term[0], new Variable[0], 1);
+
+  public static Condition alwaysTrue() {
+    return TRUE;
+  }
+
+  public static Condition alwaysFalse() {
+    return FALSE;
+  }
+
+  // Per-thread value stacks. Evaluation can nest, since reading a term may bring a State's logic up
+  // to date, so each evaluation takes the next maxDepth slots and frees them when done.
+  private static final class Scratch {
+    private int[] values = new int[64];
+    private int used = 0;
+  }
+
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  private final int[] program;
+  private final Term[] terms;
+  private final Variable[] variables;
+  private final int maxDepth;
+
+  Condition(int[] program, Term[] terms, Variable[] variables, int maxDepth) {
+    this.program = program;
+    this.terms = terms;
+    this.variables = variables;
+    this.maxDepth = maxDepth;
+  }
+
+  // All Terms this condition reads, directly.
+  public ImmutableSet<Term> terms() {
+    return ImmutableSet.copyOf(terms);
+  }
+
+  public ImmutableList<Variable> variables() {
+    return ImmutableList.copyOf(variables);
+  }
+
+  public int size() {
+    return program.length;
+  }
+
+  public int evaluate(Context ctx) {
+    Scratch scratch = SCRATCH.get();
+    int base = scratch.used;
+    if (base + maxDepth > scratch.values.length) {
+      // Enclosing evaluations keep the old array, which still holds their own slots.
+      scratch.values = new int[Math.max(2 * scratch.values.length, base + maxDepth)];
+    }
+    scratch.used = base + maxDepth;
+    try {
+      return evaluate(ctx, scratch.values, base);
+    } finally {
+      scratch.used = base;
+    }
+  }
+
+  private int evaluate(Context ctx, int[] stack, int base) {
+    int top = base;
+    for (int instr : program) {
+      int arg = instr >> OP_BITS;
+      switch (instr & OP_MASK) {
+        case OP_TERM:
+          stack[top++] = ctx.get(terms[arg]);
+          break;
+        case OP_CONST:
+          stack[top++] = arg;
+          break;
+        case OP_VAR:
+          stack[top++] = variables[arg].value(ctx);
+          break;
+        case OP_AND:
+          --top;
+          stack[top - 1] = (stack[top - 1] > 0 && stack[top] > 0) ? 1 : 0;
+          break;
+        case OP_OR:
+          --top;
+          stack[top - 1] = (stack[top - 1] > 0 || stack[top] > 0) ? 1 : 0;
+          break;
+        case OP_GT:
+          --top;
+          stack[top - 1] = stack[top - 1] > stack[top] ? 1 : 0;
+          break;
+        case OP_LT:
+          --top;
+          stack[top - 1] = stack[top - 1] < stack[top] ? 1 : 0;
+          break;
+        case OP_EQ:
+          --top;
+          stack[top - 1] = stack[top - 1] == stack[top] ? 1 : 0;
+          break;
+        default:
+          throw new IllegalStateException("Bad instruction: " + instr);
+      }
+    }
+
+    return stack[base];
+  }
+
+  public boolean test(Context ctx) {
+    return evaluate(ctx) > 0;
+  }
+
+  @Override
+  public String toString() {
+    return "Condition" + Arrays.toString(program);
+  }
+}
@@ -0,0 +1,228 @@
+package hollow.knight.logic;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import com.google.common.primitives.Ints;
+
+/**
+ * Compiles infix LM logic strings, such as 'Town + (LEFTCLAW | RIGHTCLAW) + GRUBS>5', into
+ * postfix Conditions.
+ */
+public final class ConditionParser {
+  private static final String OPERATORS = "()|+<>=?";
+
+  private final String logic;
+  private final Predicate<String> isDefined;
+  private final List<String> tokens;
+  private int pos = 0;
+
+  private final List<Integer> program = new ArrayList<>();
+  private final Map<Term, Integer> termIndices = new LinkedHashMap<>();
+  private final List<Condition.Variable> variables = new ArrayList<>();
+  private int depth = 0;
+  private int maxDepth = 0;
+
+  private ConditionParser(String logic, Predicate<String> isDefined) {
+    this.logic = logic;
+    this.isDefined = isDefined;
+    this.tokens = tokenize(logic);
+  }
+
+  private static List<String> tokenize(String logic) {
+    List<String> tokens = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    for (char ch : logic.toCharArray()) {
+      if (Character.isWhitespace(ch) || OPERATORS.indexOf(ch) != -1) {
+        if (sb.length() > 0) {
+          tokens.add(sb.toString());
+          sb = new StringBuilder();
+        }
+        if (!Character.isWhitespace(ch)) {
+          tokens.add(String.valueOf(ch));
+        }
+      } else {
+        sb.append(ch);
+      }
+    }
+    if (sb.length() > 0) {
+      tokens.add(sb.toString());
+    }
+    return tokens;
+  }
+
+  private ParseException error(String msg) {
+    return new ParseException(msg + " at token " + pos + ": '" + logic + "'");
+  }
+
+  private String peek() {
+    return pos < tokens.size() ? tokens.get(pos) : null;
+  }
+
+  private boolean consume(String op) {
+    if (op.equals(peek())) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  // How much has been emitted, for discarding a parsed operand.
+  private final class Mark {
+    private final int programSize = program.size();
+    private final int numTerms = termIndices.size();
+    private final int numVariables = variables.size();
+    private final int markDepth = depth;
+
+    void reset() {
+      program.subList(programSize, program.size()).clear();
+      termIndices.values().removeIf(i -> i >= numTerms);
+      variables.subList(numVariables, variables.size()).clear();
+      depth = markDepth;
+    }
+  }
+
+  private void emit(int op, int arg) {
+    program.add((arg << Condition.OP_BITS) | op);
+    if (op <= Condition.OP_VAR) {
+      maxDepth = Math.max(maxDepth, ++depth);
+    } else {
+      --depth;
+    }
+  }
+
+  private void parseExpression() throws ParseException {
+    parseConjunction();
+    while (consume("|")) {
+      parseConjunction();
+      emit(Condition.OP_OR, 0);
+    }
+  }
+
+  private void parseConjunction() throws ParseException {
+    parseComparison();
+    while (consume("+")) {
+      parseComparison();
+      emit(Condition.OP_AND, 0);
+    }
+  }
+
+  private void parseComparison() throws ParseException {
+    parseCoalesce();
+    if (consume(">")) {
+      parseCoalesce();
+      emit(Condition.OP_GT, 0);
+    } else if (consume("<")) {
+      parseCoalesce();
+      emit(Condition.OP_LT, 0);
+    } else if (consume("=")) {
+      parseCoalesce();
+      emit(Condition.OP_EQ, 0);
+    }
+  }
+
+  // 'A ? B' is A if A is a defined name, else B. Definedness is fixed by the LM, so only the chosen
+  // operand is compiled.
+  private void parseCoalesce() throws ParseException {
+    Mark mark = new Mark();
+    String name = parsePrimary();
+    boolean chosen = name == null || isDefined.test(name);
+    while (consume("?")) {
+      if (chosen) {
+        Mark skipped = new Mark();
+        parsePrimary();
+        skipped.reset();
+      } else {
+        mark.reset();
+        name = parsePrimary();
+        chosen = name == null || isDefined.test(name);
+      }
+    }
+  }
+
+  // Returns the name read, if the primary is a single term.
+  private String parsePrimary() throws ParseException {
+    String token = peek();
+    if (token == null) {
+      throw error("Unexpected end of logic");
+    }
+
+    if (consume("(")) {
+      parseExpression();
+      if (!consume(")")) {
+        throw error("Missing ')'");
+      }
+      return null;
+    }
+    if (token.length() == 1 && OPERATORS.contains(token)) {
+      throw error("Unexpected operator '" + token + "'");
+    }
+
+    pos++;
+    return parseAtom(token);
+  }
+
+  private String parseAtom(String atom) throws ParseException {
+    Integer constant = Ints.tryParse(atom);
+    if (constant != null) {
+      emit(Condition.OP_CONST, constant);
+      return null;
+    }
+
+    switch (atom) {
+      case "TRUE":
+      case "ANY":
+        emit(Condition.OP_CONST, 1);
+        return null;
+      case "FALSE":
+      case "NONE":
+        emit(Condition.OP_CONST, 0);
+        return null;
+      default:
+        break;
+    }
+
+    if (atom.startsWith("$")) {
+      variables.add(LogicVariables.parse(atom));
+      emit(Condition.OP_VAR, variables.size() - 1);
+      return null;
+    }
+
+    // '*Name' is a reference to a macro or waypoint; we treat both as terms.
+    String name = atom.startsWith("*") ? atom.substring(1) : atom;
+    Term term = Term.create(name);
+    Integer index = termIndices.get(term);
+    if (index == null) {
+      index = termIndices.size();
+      termIndices.put(term, index);
+    }
+    emit(Condition.OP_TERM, index);
+    return name;
+  }
+
+  private Condition compile() throws ParseException {
+    if (tokens.isEmpty()) {
+      throw error("Empty logic");
+    }
+
+    parseExpression();
+    if (pos != tokens.size()) {
+      throw error("Unexpected token '" + peek() + "'");
+    }
+
+    return new Condition(program.stream().mapToInt(i -> i).toArray(),
+        termIndices.keySet().toArray(new Term[0]),
+        variables.toArray(new Condition.Variable[0]), maxDepth);
+  }
+
+  // Checks syntax only: every name counts as defined.
+  public static Condition parse(String logic) throws ParseException {
+    return parse(logic, name -> true);
+  }
+
+  public static Condition parse(String logic, Predicate<String> isDefined) throws ParseException {
+    return new ConditionParser(logic, isDefined).compile();
+  }
+}
@@ -13,6 +13,9 @@ public interface Cost {
 
   JsonObject toICDLJson() throws ICDLException;
 
+  // Whether this cost can be paid with the given values, plus any required tolerances.
+  boolean canPay(Condition.Context values, TermMap tolerances);
+
   default int geoCost() {
     return 0;
   }
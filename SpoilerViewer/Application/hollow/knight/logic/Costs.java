@@ -48,6 +48,15 @@ public final class Costs {
     return costs.stream().mapToInt(c -> c.termCost(term)).sum();
   }
 
+  public boolean canPay(Condition.Context values, TermMap tolerances) {
+    for (Cost c : costs) {
+      if (!c.canPay(values, tolerances)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public JsonArray toRawSpoilerJson() {
     JsonArray arr = new JsonArray();
     costs.forEach(c -> arr.add(c.toRawSpoilerJson()));
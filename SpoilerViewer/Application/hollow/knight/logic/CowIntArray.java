@@ -0,0 +1,120 @@
+package hollow.knight.logic;
+
+import java.util.Arrays;
+
+/**
+ * A growable int array which can be forked in constant time.
+ *
+ * <p>
+ * Values are stored in fixed-size chunks. Forks share all chunks, and each side copies a chunk only
+ * the first time it writes to it, so long chains of forks share almost all of their memory.
+ */
+final class CowIntArray {
+  private static final int CHUNK_BITS = 6;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private int[][] chunks;
+  // The token of the array which may write to each chunk in place.
+  private Object[] owners;
+  private boolean spineShared;
+  private Object token = new Object();
+
+  CowIntArray() {
+    this.chunks = new int[0][];
+    this.owners = new Object[0];
+  }
+
+  private CowIntArray(CowIntArray copy) {
+    this.chunks = copy.chunks;
+    this.owners = copy.owners;
+    this.spineShared = true;
+
+    // The original loses ownership of every chunk too, since they are now shared.
+    copy.spineShared = true;
+    copy.token = new Object();
+  }
+
+  CowIntArray fork() {
+    return new CowIntArray(this);
+  }
+
+  int get(int index) {
+    int c = index >>> CHUNK_BITS;
+    if (c >= chunks.length || chunks[c] == null) {
+      return 0;
+    }
+    return chunks[c][index & CHUNK_MASK];
+  }
+
+  void set(int index, int value) {
+    int c = index >>> CHUNK_BITS;
+    if (c >= chunks.length) {
+      if (value == 0) {
+        return;
+      }
+
+      int len = Math.max(c + 1, chunks.length * 2);
+      chunks = Arrays.copyOf(chunks, len);
+      owners = Arrays.copyOf(owners, len);
+      spineShared = false;
+    } else if (spineShared) {
+      chunks = chunks.clone();
+      owners = owners.clone();
+      spineShared = false;
+    }
+
+    int[] chunk = chunks[c];
+    if (chunk == null) {
+      if (value == 0) {
+        return;
+      }
+      chunk = new int[CHUNK_SIZE];
+      chunks[c] = chunk;
+      owners[c] = token;
+    } else if (owners[c] != token) {
+      chunk = chunk.clone();
+      chunks[c] = chunk;
+      owners[c] = token;
+    }
+    chunk[index & CHUNK_MASK] = value;
+  }
+
+  boolean getBit(int index) {
+    return ((get(index >>> 5) >>> (index & 31)) & 1) != 0;
+  }
+
+  void setBit(int index, boolean value) {
+    int word = get(index >>> 5);
+    int mask = 1 << (index & 31);
+    int newWord = value ? (word | mask) : (word & ~mask);
+    if (newWord != word) {
+      set(index >>> 5, newWord);
+    }
+  }
+
+  // The index of the first set bit at or after 'from', or -1 if there is none. Unallocated chunks
+  // and zero words are skipped whole.
+  int nextSetBit(int from) {
+    int w = from >>> 5;
+    int word = get(w) & (-1 << (from & 31));
+    while (word == 0) {
+      ++w;
+      int c = w >>> CHUNK_BITS;
+      while (c < chunks.length && chunks[c] == null) {
+        w = ++c << CHUNK_BITS;
+      }
+      if (c >= chunks.length) {
+        return -1;
+      }
+      word = chunks[c][w & CHUNK_MASK];
+    }
+    return (w << 5) + Integer.numberOfTrailingZeros(word);
+  }
+
+  void clear() {
+    chunks = new int[0][];
+    owners = new Object[0];
+    spineShared = false;
+  }
+}
@@ -29,6 +29,11 @@ public final class GeoCost implements Cost {
     return value;
   }
 
+  @Override
+  public boolean canPay(Condition.Context values, TermMap tolerances) {
+    return values.get(Term.canReplenishGeo()) > 0;
+  }
+
   @Override
   public String debugString() {
     return value + " geo";
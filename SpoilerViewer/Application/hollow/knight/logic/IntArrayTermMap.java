@@ -0,0 +1,114 @@
+package hollow.knight.logic;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A mutable TermMap indexed by Term ordinal, with no boxing on get or set.
+ *
+ * <p>
+ * Copying an IntArrayTermMap is constant time; storage is shared until either copy is modified.
+ */
+public final class IntArrayTermMap implements TermMap {
+  private final CowIntArray values;
+  // A bitset of ordinals with non-zero values, so iteration skips absent terms a word at a time.
+  private final CowIntArray present;
+  private int size = 0;
+
+  public IntArrayTermMap() {
+    this.values = new CowIntArray();
+    this.present = new CowIntArray();
+  }
+
+  public IntArrayTermMap(TermMap map) {
+    if (map instanceof IntArrayTermMap) {
+      IntArrayTermMap other = (IntArrayTermMap) map;
+      this.values = other.values.fork();
+      this.present = other.present.fork();
+      this.size = other.size;
+    } else {
+      this.values = new CowIntArray();
+      this.present = new CowIntArray();
+      map.terms().forEach(t -> set(t, map.get(t)));
+    }
+  }
+
+  private final Set<Term> terms = new AbstractSet<Term>() {
+    @Override
+    public Iterator<Term> iterator() {
+      return new Iterator<Term>() {
+        private int next = present.nextSetBit(0);
+
+        @Override
+        public boolean hasNext() {
+          return next != -1;
+        }
+
+        @Override
+        public Term next() {
+          if (next == -1) {
+            throw new NoSuchElementException();
+          }
+
+          Term term = Term.forOrdinal(next);
+          next = present.nextSetBit(next + 1);
+          return term;
+        }
+      };
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return o instanceof Term && values.get(((Term) o).ordinal()) != 0;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  };
+
+  @Override
+  public Set<Term> terms() {
+    return terms;
+  }
+
+  @Override
+  public int get(Term term) {
+    return values.get(term.ordinal());
+  }
+
+  public void set(Term t, int value) {
+    int prev = values.get(t.ordinal());
+    if (prev == value) {
+      return;
+    }
+
+    if (prev == 0) {
+      ++size;
+      present.setBit(t.ordinal(), true);
+    } else if (value == 0) {
+      --size;
+      present.setBit(t.ordinal(), false);
+    }
+    values.set(t.ordinal(), value);
+  }
+
+  public void add(Term t, int value) {
+    set(t, get(t) + value);
+  }
+
+  public void add(TermMap other) {
+    for (Term t : other.terms()) {
+      add(t, other.get(t));
+    }
+  }
+
+  public void clear() {
+    values.clear();
+    present.clear();
+    size = 0;
+  }
+}
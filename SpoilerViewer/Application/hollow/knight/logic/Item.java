@@ -102,7 +102,7 @@ public final class Item {
     }
   }
 
-  void apply(MutableTermMap ctx) {
+  void apply(IntArrayTermMap ctx) {
     effects.apply(ctx);
   }
 
@@ -52,6 +52,8 @@ public final class ItemChecks implements StateContext.Mutable {
     }
   }
 
+  public static final String SAVE_NAME = "ICDLItemChecks";
+
   private final SynchronizedEntityManager<Listener> listeners = new SynchronizedEntityManager<>();
 
   private final BiMap<CheckId, ItemCheck> checksById = HashBiMap.create();
@@ -67,6 +69,7 @@ public final class ItemChecks implements StateContext.Mutable {
   private final Set<Term> originalNonVanillaItems = new HashSet<>();
 
   private int nextId = 1;
+  private int version = 0;
 
   private ItemChecks() {}
 
@@ -110,6 +113,11 @@ public final class ItemChecks implements StateContext.Mutable {
     listeners.remove(listener);
   }
 
+  // Incremented on every change to the set of checks.
+  public int version() {
+    return version;
+  }
+
   private CheckId newId() {
     return CheckId.of(nextId++);
   }
@@ -123,6 +131,7 @@ public final class ItemChecks implements StateContext.Mutable {
   }
 
   private void addInternal(ItemCheck check) {
+    ++version;
     checksById.put(check.id(), check);
     idsByLocation.put(check.location().name(), check.id());
 
@@ -134,6 +143,7 @@ public final class ItemChecks implements StateContext.Mutable {
   }
 
   private void removeInternal(CheckId id) {
+    ++version;
     ItemCheck check = checksById.remove(id);
     idsByLocation.removeValue(id);
     idsByItemName.removeValue(id);
@@ -402,7 +412,7 @@ public final class ItemChecks implements StateContext.Mutable {
 
   @Override
   public String saveName() {
-    return "ICDLItemChecks";
+    return SAVE_NAME;
   }
 
   @Override
@@ -9,5 +9,5 @@ public interface ItemEffects {
 
   Stream<Term> effectTerms();
 
-  void apply(MutableTermMap ctx);
+  void apply(IntArrayTermMap ctx);
 }
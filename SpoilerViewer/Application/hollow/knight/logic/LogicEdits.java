@@ -1,19 +1,46 @@
 package hollow.knight.logic;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 public final class LogicEdits implements StateContext.Mutable {
+  public interface Listener {
+    // The logic for 'name' was edited, reverted, or added as a waypoint.
+    void logicEdited(String name);
+  }
+
+  public static final String SAVE_NAME = "ICDLogicEdits";
+
+  // Case-insensitive, with ties broken by case.
+  public static final Comparator<String> NAME_ORDER =
+      String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+  private final SynchronizedEntityManager<Listener> listeners = new SynchronizedEntityManager<>();
   private final Set<String> addedWaypoints;
   private final Map<String, String> logicEdits;
+  private int version = 0;
+
+  // The name changed by each version after `changeLogStart`, for incremental recompilation.
+  private final List<String> changeLog = new ArrayList<>();
+  private int changeLogStart = 0;
+
+  // Base logic and waypoints by name, indexed from `indexedLM` on first use.
+  private JsonObject indexedLM = null;
+  private final Map<String, String> baseLogic = new HashMap<>();
+  private final Set<String> baseWaypoints = new HashSet<>();
+  // Base, edited and added names, sorted by NAME_ORDER. Null if it needs to be rebuilt.
+  private ImmutableList<String> sortedNames = null;
 
   public LogicEdits() {
     this.addedWaypoints = new HashSet<>();
@@ -28,35 +55,155 @@ public final class LogicEdits implements StateContext.Mutable {
     return logicEdits.containsKey(name);
   }
 
-  public ImmutableSet<String> allLogicNames(StateContext ctx) {
-    JsonArray arr = ctx.rawSpoilerJson().get("LM").getAsJsonObject().get("Logic").getAsJsonArray();
-    List<String> allNames = new ArrayList<>();
-    for (JsonElement elem : arr) {
-      allNames.add(elem.getAsJsonObject().get("name").getAsString());
+  // Returns null if 'name' isn't edited.
+  public String editedLogic(String name) {
+    return logicEdits.get(name);
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  // Incremented on every change, so compiled logic can be invalidated.
+  public int version() {
+    return version;
+  }
+
+  // Names whose logic changed after the given version, or null if that's no longer known.
+  public ImmutableSet<String> changedSince(int version) {
+    if (version < changeLogStart || version > this.version) {
+      return null;
     }
-    addedWaypoints.forEach(allNames::add);
-    logicEdits.keySet().forEach(allNames::add);
-    return ImmutableSet.copyOf(allNames);
+    return ImmutableSet.copyOf(changeLog.subList(version - changeLogStart, changeLog.size()));
   }
 
-  private String getBaseLogic(StateContext ctx, String name) {
-    for (JsonElement elem : ctx.rawSpoilerJson().get("LM").getAsJsonObject().get("Logic")
-        .getAsJsonArray()) {
-      if (elem.getAsJsonObject().get("name").getAsString().equals(name)) {
-        return elem.getAsJsonObject().get("logic").getAsString();
+  private void changed(String name) {
+    changeLog.add(name);
+    version++;
+    listeners.forEach(l -> l.logicEdited(name));
+  }
+
+  Set<String> addedWaypoints() {
+    return Collections.unmodifiableSet(addedWaypoints);
+  }
+
+  Map<String, String> editedLogic() {
+    return Collections.unmodifiableMap(logicEdits);
+  }
+
+  private Map<String, String> baseLogic(StateContext ctx) {
+    JsonObject lm = ctx.rawSpoilerJson().get("LM").getAsJsonObject();
+    if (lm != indexedLM) {
+      baseLogic.clear();
+      baseWaypoints.clear();
+      for (JsonElement elem : lm.get("Logic").getAsJsonArray()) {
+        JsonObject obj = elem.getAsJsonObject();
+        baseLogic.putIfAbsent(obj.get("name").getAsString(), obj.get("logic").getAsString());
+      }
+      // Matches LogicMap.compile(), where waypoint logic only applies if not defined elsewhere.
+      JsonElement waypoints = lm.get("Waypoints");
+      if (waypoints != null && waypoints.isJsonArray()) {
+        for (JsonElement elem : waypoints.getAsJsonArray()) {
+          if (elem.isJsonPrimitive()) {
+            baseWaypoints.add(elem.getAsString());
+          } else {
+            JsonObject obj = elem.getAsJsonObject();
+            String name = obj.get("name").getAsString();
+            baseWaypoints.add(name);
+            if (obj.has("logic")) {
+              baseLogic.putIfAbsent(name, obj.get("logic").getAsString());
+            }
+          }
+        }
       }
+      indexedLM = lm;
+      sortedNames = null;
     }
+    return baseLogic;
+  }
+
+  public boolean hasLogic(StateContext ctx, String name) {
+    return baseLogic(ctx).containsKey(name) || logicEdits.containsKey(name);
+  }
 
-    return "";
+  public boolean isWaypoint(StateContext ctx, String name) {
+    baseLogic(ctx);
+    return baseWaypoints.contains(name) || addedWaypoints.contains(name);
+  }
+
+  // Sorted by NAME_ORDER.
+  public ImmutableList<String> allLogicNames(StateContext ctx) {
+    Map<String, String> base = baseLogic(ctx);
+    if (sortedNames == null) {
+      Set<String> names = new HashSet<>(base.keySet());
+      names.addAll(addedWaypoints);
+      names.addAll(logicEdits.keySet());
+      sortedNames = names.stream().sorted(NAME_ORDER).collect(ImmutableList.toImmutableList());
+    }
+    return sortedNames;
+  }
+
+  // All names starting with `prefix`, ignoring case, sorted by NAME_ORDER.
+  public ImmutableList<String> logicNamesWithPrefix(StateContext ctx, String prefix) {
+    ImmutableList<String> names = allLogicNames(ctx);
+    int from = lowerBound(names, prefix);
+    int to = lowerBound(names, prefix + Character.MAX_VALUE);
+    return names.subList(from, to);
+  }
+
+  // The first index whose name is not less than `key`, ignoring case.
+  private static int lowerBound(List<String> names, String key) {
+    int lo = 0;
+    int hi = names.size();
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (String.CASE_INSENSITIVE_ORDER.compare(names.get(mid), key) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private String getBaseLogic(StateContext ctx, String name) {
+    return baseLogic(ctx).getOrDefault(name, "");
+  }
+
+  // Keeps `sortedNames` current as `name` enters or leaves the universe.
+  private void nameChanged(StateContext ctx, String name) {
+    if (sortedNames == null) {
+      return;
+    }
+
+    boolean present = hasLogic(ctx, name);
+    int index = Collections.binarySearch(sortedNames, name, NAME_ORDER);
+    if (present == index >= 0) {
+      return;
+    }
+
+    List<String> names = new ArrayList<>(sortedNames);
+    if (present) {
+      names.add(-index - 1, name);
+    } else {
+      names.remove(index);
+    }
+    sortedNames = ImmutableList.copyOf(names);
   }
 
   public void addWaypoint(StateContext ctx, String name) {
-    if (allLogicNames(ctx).contains(name)) {
+    if (hasLogic(ctx, name)) {
       return;
     }
 
     addedWaypoints.add(name);
     logicEdits.put(name, "ANY");
+    nameChanged(ctx, name);
+    changed(name);
   }
 
   public String getLogic(StateContext ctx, String name) {
@@ -70,18 +217,22 @@ public final class LogicEdits implements StateContext.Mutable {
   public void saveLogic(StateContext ctx, String name, String value) {
     String base = getBaseLogic(ctx, name);
     if (value.equals(base)) {
-      clearLogic(name);
+      clearLogic(ctx, name);
     } else {
       logicEdits.put(name, value);
       if (base.isEmpty()) {
         addedWaypoints.add(name);
       }
+      nameChanged(ctx, name);
+      changed(name);
     }
   }
 
-  public void clearLogic(String name) {
+  public void clearLogic(StateContext ctx, String name) {
     addedWaypoints.remove(name);
     logicEdits.remove(name);
+    nameChanged(ctx, name);
+    changed(name);
   }
 
   public JsonArray addedWaypointsArray() {
@@ -96,17 +247,22 @@ public final class LogicEdits implements StateContext.Mutable {
     return obj;
   }
 
-  public void updateLM(JsonObject lm) {
-    JsonArray logicArr = lm.get("Logic").getAsJsonArray();
+  // Returns a copy of 'lm' with these edits applied. Unedited entries are shared with 'lm'.
+  public JsonObject updateLM(JsonObject lm) {
+    JsonArray logicArr = new JsonArray();
     List<String> toAdd = new ArrayList<>();
-    for (JsonElement elem : logicArr) {
+    for (JsonElement elem : lm.get("Logic").getAsJsonArray()) {
       JsonObject obj = elem.getAsJsonObject();
       String name = obj.get("name").getAsString();
       if (logicEdits.containsKey(name)) {
-        obj.addProperty("logic", logicEdits.get(name));
+        JsonObject edited = new JsonObject();
+        obj.entrySet().forEach(e -> edited.add(e.getKey(), e.getValue()));
+        edited.addProperty("logic", logicEdits.get(name));
+        obj = edited;
       } else {
         toAdd.add(name);
       }
+      logicArr.add(obj);
     }
 
     for (String name : toAdd) {
@@ -115,13 +271,20 @@ public final class LogicEdits implements StateContext.Mutable {
       obj.addProperty("logic", logicEdits.get(name));
     }
 
-    JsonArray waypoints = lm.get("Waypoints").getAsJsonArray();
+    JsonArray waypoints = new JsonArray();
+    waypoints.addAll(lm.get("Waypoints").getAsJsonArray());
     addedWaypoints.forEach(waypoints::add);
+
+    JsonObject newLM = new JsonObject();
+    lm.entrySet().forEach(e -> newLM.add(e.getKey(), e.getValue()));
+    newLM.add("Logic", logicArr);
+    newLM.add("Waypoints", waypoints);
+    return newLM;
   }
 
   @Override
   public String saveName() {
-    return "ICDLogicEdits";
+    return SAVE_NAME;
   }
 
   @Override
@@ -136,6 +299,9 @@ public final class LogicEdits implements StateContext.Mutable {
   public void load(JsonObject json) {
     this.addedWaypoints.clear();
     this.logicEdits.clear();
+    sortedNames = null;
+    changeLog.clear();
+    changeLogStart = ++version;
 
     json.get("addedWaypoints").getAsJsonArray().forEach(e -> addedWaypoints.add(e.getAsString()));
     json.get("logicEdits").getAsJsonObject().entrySet()
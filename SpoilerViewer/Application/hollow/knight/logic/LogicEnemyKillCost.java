@@ -30,6 +30,13 @@ public final class LogicEnemyKillCost implements Cost {
     return amount;
   }
 
+  @Override
+  public boolean canPay(Condition.Context values, TermMap tolerances) {
+    // Killing multiple respawning enemies requires resting at a bench between kills.
+    return values.get(defeatWaypoint) > 0
+        && (amount <= 1 || !respawns || values.get(canBenchWaypoint) > 0);
+  }
+
   @Override
   public String debugString() {
     return "Kill " + amount + " " + enemyIcName;
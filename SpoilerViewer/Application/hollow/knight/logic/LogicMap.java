@@ -0,0 +1,279 @@
+package hollow.knight.logic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Ints;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/** Compiled logic for every named LM definition: locations, transitions and waypoints. */
+public final class LogicMap {
+  private static final int[] NO_DEPENDENTS = new int[0];
+  private static final AtomicLong nextId = new AtomicLong();
+
+  private final ImmutableMap<String, Condition> conditions;
+  private final ImmutableSet<Term> waypoints;
+  private final ImmutableMap<String, String> errors;
+  // The LM's declared terms, or null if it lists none.
+  private final ImmutableSet<String> lmTerms;
+  // Sources of definitions using 'A ? B', which must be recompiled when definedness changes.
+  private final ImmutableMap<String, String> coalescingLogic;
+
+  // Every logic definition is assigned a dense index, for State to track reachability in a bitset.
+  private final ImmutableList<String> names;
+  private final ImmutableMap<String, Integer> indices;
+  private final Condition[] byIndex;
+  private final boolean[] isWaypoint;
+
+  // Indices of the logic definitions which read each term, by term ordinal.
+  private final int[][] dependents;
+
+  // If recompiled from another LogicMap with the same indices, its id and the changed names.
+  private final long id = nextId.getAndIncrement();
+  private final long baseId;
+  private final ImmutableSet<String> changedFromBase;
+
+  private LogicMap(Map<String, Condition> conditions, Set<Term> waypoints,
+      Map<String, String> errors, ImmutableSet<String> lmTerms,
+      Map<String, String> coalescingLogic, long baseId, Set<String> changedFromBase) {
+    this.lmTerms = lmTerms;
+    this.coalescingLogic = ImmutableMap.copyOf(coalescingLogic);
+    this.baseId = baseId;
+    this.changedFromBase = ImmutableSet.copyOf(changedFromBase);
+    this.conditions = ImmutableMap.copyOf(conditions);
+    this.waypoints = ImmutableSet.copyOf(waypoints);
+    this.errors = ImmutableMap.copyOf(errors);
+
+    this.names = this.conditions.keySet().asList();
+    ImmutableMap.Builder<String, Integer> indicesBuilder = ImmutableMap.builder();
+    this.byIndex = new Condition[names.size()];
+    this.isWaypoint = new boolean[names.size()];
+    List<List<Integer>> dependentLists = new ArrayList<>();
+    for (int i = 0; i < names.size(); i++) {
+      String name = names.get(i);
+      indicesBuilder.put(name, i);
+      byIndex[i] = this.conditions.get(name);
+      isWaypoint[i] = this.waypoints.contains(Term.create(name));
+
+      for (Term t : byIndex[i].terms()) {
+        while (dependentLists.size() <= t.ordinal()) {
+          dependentLists.add(null);
+        }
+        if (dependentLists.get(t.ordinal()) == null) {
+          dependentLists.set(t.ordinal(), new ArrayList<>());
+        }
+        dependentLists.get(t.ordinal()).add(i);
+      }
+    }
+    this.indices = indicesBuilder.build();
+
+    this.dependents = new int[dependentLists.size()][];
+    for (int i = 0; i < dependents.length; i++) {
+      List<Integer> list = dependentLists.get(i);
+      dependents[i] = list == null ? NO_DEPENDENTS : Ints.toArray(list);
+    }
+  }
+
+  // Returns the logic for the given name. Unknown names are always in logic.
+  public Condition get(String name) {
+    return conditions.getOrDefault(name, Condition.alwaysTrue());
+  }
+
+  public ImmutableSet<String> names() {
+    return conditions.keySet();
+  }
+
+  public int size() {
+    return byIndex.length;
+  }
+
+  // Returns the index of the named logic, or -1 if there is none.
+  public int indexOf(String name) {
+    return indices.getOrDefault(name, -1);
+  }
+
+  public String name(int index) {
+    return names.get(index);
+  }
+
+  public Condition get(int index) {
+    return byIndex[index];
+  }
+
+  public boolean isWaypoint(int index) {
+    return isWaypoint[index];
+  }
+
+  // Indices of all logic definitions which read the given term. Do not modify.
+  public int[] dependents(Term term) {
+    return term.ordinal() < dependents.length ? dependents[term.ordinal()] : NO_DEPENDENTS;
+  }
+
+  public boolean hasLogic(String name) {
+    return conditions.containsKey(name);
+  }
+
+  public ImmutableSet<Term> waypoints() {
+    return waypoints;
+  }
+
+  // Logic definitions which failed to compile, mapped to their error. These are never in logic.
+  public ImmutableMap<String, String> errors() {
+    return errors;
+  }
+
+  // The names whose logic differs from 'previous', if this was recompiled directly from it, or
+  // null otherwise. Indices of all other names are unchanged.
+  public ImmutableSet<String> changedSince(LogicMap previous) {
+    return previous != null && previous.id == baseId ? changedFromBase : null;
+  }
+
+  // Whether 'A ? B' treats a name as defined. Without a term list, every name is.
+  private static Predicate<String> isDefined(ImmutableSet<String> lmTerms, Set<String> names,
+      Set<Term> waypoints) {
+    return name -> lmTerms == null || lmTerms.contains(name) || names.contains(name)
+        || waypoints.contains(Term.create(name));
+  }
+
+  // Terms are listed directly by older LMs, and grouped by type by newer ones.
+  private static ImmutableSet<String> lmTerms(JsonObject lm) {
+    JsonElement terms = lm.get("Terms");
+    if (terms == null || terms.isJsonNull()) {
+      return null;
+    }
+
+    List<JsonElement> groups = new ArrayList<>();
+    if (terms.isJsonArray()) {
+      groups.add(terms);
+    } else {
+      terms.getAsJsonObject().entrySet().forEach(e -> groups.add(e.getValue()));
+    }
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    for (JsonElement group : groups) {
+      group.getAsJsonArray().forEach(t -> names.add(t.getAsString()));
+    }
+    return names.build();
+  }
+
+  private static void compile(String name, String logic, Predicate<String> isDefined,
+      Map<String, Condition> conditions, Map<String, String> errors,
+      Map<String, String> coalescingLogic) {
+    if (logic.indexOf('?') != -1) {
+      coalescingLogic.put(name, logic);
+    } else {
+      coalescingLogic.remove(name);
+    }
+    try {
+      conditions.put(name, ConditionParser.parse(logic, isDefined));
+      errors.remove(name);
+    } catch (ParseException ex) {
+      conditions.put(name, Condition.alwaysFalse());
+      errors.put(name, ex.getMessage());
+    }
+  }
+
+  public static LogicMap compile(JsonObject rawSpoilerJson, LogicEdits logicEdits) {
+    JsonObject lm = rawSpoilerJson.get("LM").getAsJsonObject();
+
+    // Collect every definition first, since definedness for 'A ? B' depends on all of them.
+    Map<String, String> logic = new LinkedHashMap<>();
+    for (JsonElement elem : lm.get("Logic").getAsJsonArray()) {
+      JsonObject obj = elem.getAsJsonObject();
+      logic.put(obj.get("name").getAsString(), obj.get("logic").getAsString());
+    }
+
+    Set<Term> waypoints = new LinkedHashSet<>();
+    JsonElement waypointsJson = lm.get("Waypoints");
+    if (waypointsJson != null && waypointsJson.isJsonArray()) {
+      for (JsonElement elem : waypointsJson.getAsJsonArray()) {
+        if (elem.isJsonPrimitive()) {
+          waypoints.add(Term.create(elem.getAsString()));
+        } else {
+          JsonObject obj = elem.getAsJsonObject();
+          String name = obj.get("name").getAsString();
+          waypoints.add(Term.create(name));
+          if (obj.has("logic")) {
+            logic.putIfAbsent(name, obj.get("logic").getAsString());
+          }
+        }
+      }
+    }
+
+    logicEdits.addedWaypoints().forEach(w -> waypoints.add(Term.create(w)));
+    logic.putAll(logicEdits.editedLogic());
+
+    ImmutableSet<String> lmTerms = lmTerms(lm);
+    Predicate<String> isDefined = isDefined(lmTerms, logic.keySet(), waypoints);
+    Map<String, Condition> conditions = new HashMap<>();
+    Map<String, String> errors = new HashMap<>();
+    Map<String, String> coalescingLogic = new HashMap<>();
+    logic.forEach((name, l) -> compile(name, l, isDefined, conditions, errors, coalescingLogic));
+
+    return new LogicMap(conditions, waypoints, errors, lmTerms, coalescingLogic, -1,
+        ImmutableSet.of());
+  }
+
+  // Returns a copy of this map with only the given definitions recompiled. A null logic removes the
+  // definition.
+  public LogicMap recompile(Map<String, String> updates, Predicate<String> isWaypoint) {
+    Map<String, Condition> newConditions = new LinkedHashMap<>(conditions);
+    Map<String, String> newErrors = new HashMap<>(errors);
+    Map<String, String> newCoalescingLogic = new HashMap<>(coalescingLogic);
+    Set<Term> newWaypoints = new LinkedHashSet<>(waypoints);
+
+    boolean removed = false;
+    for (Map.Entry<String, String> e : updates.entrySet()) {
+      String name = e.getKey();
+      if (e.getValue() == null) {
+        removed |= newConditions.remove(name) != null;
+        newErrors.remove(name);
+        newCoalescingLogic.remove(name);
+      }
+
+      if (isWaypoint.test(name)) {
+        newWaypoints.add(Term.create(name));
+      } else {
+        newWaypoints.remove(Term.create(name));
+      }
+    }
+
+    Set<String> names = new HashSet<>(newConditions.keySet());
+    updates.forEach((name, logic) -> {
+      if (logic != null) {
+        names.add(name);
+      }
+    });
+    Predicate<String> wasDefined = isDefined(lmTerms, conditions.keySet(), waypoints);
+    Predicate<String> isDefined = isDefined(lmTerms, names, newWaypoints);
+
+    // Adding or removing a name can change how existing 'A ? B' logic resolves.
+    Map<String, String> recompiled = new HashMap<>(updates);
+    if (updates.keySet().stream().anyMatch(n -> wasDefined.test(n) != isDefined.test(n))) {
+      newCoalescingLogic.forEach((name, logic) -> {
+        if (!updates.containsKey(name)) {
+          recompiled.put(name, logic);
+        }
+      });
+    }
+    recompiled.forEach((name, logic) -> {
+      if (logic != null) {
+        compile(name, logic, isDefined, newConditions, newErrors, newCoalescingLogic);
+      }
+    });
+
+    // Removal shifts indices, so it can't be applied incrementally.
+    return new LogicMap(newConditions, newWaypoints, newErrors, lmTerms, newCoalescingLogic,
+        removed ? -1 : id, recompiled.keySet());
+  }
+}
@@ -0,0 +1,71 @@
+package hollow.knight.logic;
+
+import java.util.Arrays;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+
+// Implementations of the '$Name[args]' logic variables we understand.
+final class LogicVariables {
+
+  // Notches required to equip the given charms, allowing overcharm.
+  private static Condition.Variable notchCost(ImmutableList<Integer> charmIds) {
+    return ctx -> {
+      int sum = 0;
+      int max = 0;
+      for (int id : charmIds) {
+        int cost = ctx.ctx().notchCosts().notchCost(id);
+        sum += cost;
+        max = Math.max(max, cost);
+      }
+      return sum - max;
+    };
+  }
+
+  private static Condition.Variable startLocation(String startLoc) {
+    return ctx -> ctx.ctx().startLoc().equals(startLoc) ? 1 : 0;
+  }
+
+  // State modifiers and other variables we can't simulate are assumed satisfied.
+  private static final Condition.Variable UNKNOWN = ctx -> 1;
+
+  private static ImmutableList<String> args(String atom) {
+    int l = atom.indexOf('[');
+    int r = atom.lastIndexOf(']');
+    if (l == -1 || r < l) {
+      return ImmutableList.of();
+    }
+
+    return Arrays.stream(atom.substring(l + 1, r).split(",")).map(String::trim)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  private static String name(String atom) {
+    int l = atom.indexOf('[');
+    return l == -1 ? atom.substring(1) : atom.substring(1, l);
+  }
+
+  static Condition.Variable parse(String atom) throws ParseException {
+    ImmutableList<String> args = args(atom);
+    switch (name(atom)) {
+      case "NotchCost":
+        ImmutableList.Builder<Integer> ids = ImmutableList.builder();
+        for (String arg : args) {
+          Integer id = Ints.tryParse(arg);
+          if (id == null) {
+            throw new ParseException("Bad charm id in " + atom);
+          }
+          ids.add(id);
+        }
+        return notchCost(ids.build());
+      case "StartLocation":
+        if (args.size() != 1) {
+          throw new ParseException("Bad start location in " + atom);
+        }
+        return startLocation(args.get(0));
+      default:
+        return UNKNOWN;
+    }
+  }
+
+  private LogicVariables() {}
+}
@@ -8,6 +8,11 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 public final class NotchCosts implements StateContext.Mutable {
+  public interface Listener {
+    void notchCostsChanged(ImmutableList<Integer> before, ImmutableList<Integer> after);
+  }
+
+  private final SynchronizedEntityManager<Listener> listeners = new SynchronizedEntityManager<>();
   private final List<Integer> notchCosts;
 
   public NotchCosts() {
@@ -19,8 +24,20 @@ public final class NotchCosts implements StateContext.Mutable {
   }
 
   public void setCosts(List<Integer> notchCosts) {
+    ImmutableList<Integer> before = costs();
     this.notchCosts.clear();
     this.notchCosts.addAll(notchCosts);
+
+    ImmutableList<Integer> after = costs();
+    listeners.forEach(l -> l.notchCostsChanged(before, after));
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
   }
 
   public int notchCost(int charmId) {
@@ -0,0 +1,68 @@
+package hollow.knight.logic;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Beatability analysis: from a starting State, repeatedly acquires every check in logic until
+ * nothing more is, recording the sphere in which each check was reached.
+ *
+ * <p>
+ * Each sphere's frontier is evaluated in parallel. Once a State's logic is up to date, queries on
+ * it only read, so they can run concurrently until the next acquisition.
+ */
+@AutoValue
+public abstract class SphereAnalysis {
+  // Sphere 0 holds the checks acquired before analysis began.
+  public abstract ImmutableList<ImmutableList<ItemCheck>> spheres();
+
+  public abstract ImmutableMap<ItemCheck, Integer> sphereByCheck();
+
+  // Checks which can never be reached from the starting State.
+  public abstract ImmutableList<ItemCheck> unreachable();
+
+  public final boolean isCompletable() {
+    return unreachable().isEmpty();
+  }
+
+  private static final Comparator<ItemCheck> BY_ID = Comparator.comparing(c -> c.id().id());
+
+  // Does not modify 'initial'.
+  public static SphereAnalysis analyze(State initial) {
+    State state = initial.deepCopy();
+    ImmutableList<ItemCheck> all =
+        state.ctx().checks().allChecks().sorted(BY_ID).collect(ImmutableList.toImmutableList());
+
+    List<ImmutableList<ItemCheck>> spheres = new ArrayList<>();
+    spheres.add(all.stream().filter(state::isAcquired).collect(ImmutableList.toImmutableList()));
+    List<ItemCheck> remaining = new ArrayList<>();
+    all.stream().filter(c -> !state.isAcquired(c)).forEach(remaining::add);
+
+    while (!remaining.isEmpty()) {
+      state.updateLogic();
+      ImmutableList<ItemCheck> frontier = remaining.parallelStream().filter(state::isInLogic)
+          .collect(ImmutableList.toImmutableList());
+      if (frontier.isEmpty()) {
+        break;
+      }
+
+      frontier.forEach(state::acquireCheck);
+      ImmutableSet<ItemCheck> acquired = ImmutableSet.copyOf(frontier);
+      remaining.removeIf(acquired::contains);
+      spheres.add(frontier);
+    }
+
+    ImmutableMap.Builder<ItemCheck, Integer> sphereByCheck = ImmutableMap.builder();
+    for (int i = 0; i < spheres.size(); i++) {
+      int sphere = i;
+      spheres.get(i).forEach(c -> sphereByCheck.put(c, sphere));
+    }
+    return new AutoValue_SphereAnalysis(ImmutableList.copyOf(spheres), sphereByCheck.build(),
+        ImmutableList.copyOf(remaining));
+  }
+}
@@ -29,7 +29,7 @@ public final class SplitCloakItemEffects implements ItemEffects {
   }
 
   @Override
-  public void apply(MutableTermMap ctx) {
+  public void apply(IntArrayTermMap ctx) {
     boolean hasLeft = ctx.get(LEFT_DASH) > 0;
     boolean hasRight = ctx.get(RIGHT_DASH) > 0;
     boolean hasShade = ctx.get(LEFT_DASH) >= 2 || ctx.get(RIGHT_DASH) >= 2;
@@ -1,18 +1,103 @@
 package hollow.knight.logic;
 
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Stream;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 
-/** Mutable state of a run; can be deep-copied. */
-public class State {
+/**
+ * Mutable state of a run.
+ *
+ * <p>
+ * All underlying storage is copy-on-write, so deepCopy() is constant time and forks of a State share
+ * memory until they diverge.
+ */
+public class State implements Condition.Context {
   private final StateContext ctx;
 
-  private final MutableTermMap termValues = new MutableTermMap();
-  private final Set<ItemCheck> obtains = new HashSet<>();
+  private final IntArrayTermMap termValues;
+
+  // Obtained checks, as a persistent list for iteration and a bitset of ids for lookup.
+  private static final class Obtained {
+    final ItemCheck check;
+    final Obtained next;
+
+    Obtained(ItemCheck check, Obtained next) {
+      this.check = check;
+      this.next = next;
+    }
+  }
+
+  private Obtained obtained = null;
+  private final CowIntArray obtainedIds;
+
+  // Terms granted by logic rather than by acquired items: waypoints and in-logic vanilla
+  // transitions.
+  private final IntArrayTermMap logicValues;
+
+  // Indices of all logic definitions which currently evaluate to true.
+  private final CowIntArray reachable;
+
+  // Terms whose values changed since reachability was last updated. Only logic reading these terms
+  // needs to be re-examined. Always empty after a copy.
+  private final ArrayDeque<Term> changedTerms = new ArrayDeque<>();
+  private final BitSet changedTermsSet = new BitSet();
+
+  // The logic 'reachable' was computed against. If this differs from ctx.logic(), only logic which
+  // depends on the edited definitions is recomputed, if known. Otherwise, or if any term decreased,
+  // everything is recomputed from scratch.
+  private LogicMap logic = null;
+  private ImmutableListMultimap<String, ItemCheck> vanillaTransitions = null;
+  private ImmutableListMultimap<Term, ItemCheck> vanillaTransitionsByTerm = null;
+  private boolean updating = false;
+  // If set, logic and accessible values are final, and 'ctx' is never consulted for them again.
+  private boolean frozen = false;
+  // A snapshot of ctx.tolerances(), for frozen copies only.
+  private TermMap frozenTolerances = null;
+
+  // Cost terms obtainable from in-logic checks not yet acquired, and what they were computed from.
+  // Never modified once built, so copies share it; a stale one is brought up to date by
+  // re-examining only the checks whose status may have changed since.
+  private static final class Accessible {
+    final IntArrayTermMap values;
+    // Ids of the checks counted in 'values'.
+    final CowIntArray ids;
+    final CowIntArray reachable;
+    final Obtained obtained;
+    final LogicMap logic;
+    final ItemChecks checks;
+    final int checksVersion;
+    final ImmutableListMultimap<String, ItemCheck> checksByLocation;
+    final ImmutableList<ItemCheck> checksWithCosts;
+
+    Accessible(State state, IntArrayTermMap values, CowIntArray ids,
+        ImmutableListMultimap<String, ItemCheck> checksByLocation,
+        ImmutableList<ItemCheck> checksWithCosts) {
+      this.values = values;
+      this.ids = ids;
+      this.reachable = state.reachable.fork();
+      this.obtained = state.obtained;
+      this.logic = state.logic;
+      this.checks = state.ctx.checks();
+      this.checksVersion = checks.version();
+      this.checksByLocation = checksByLocation;
+      this.checksWithCosts = checksWithCosts;
+    }
+  }
+
+  private Accessible accessible = null;
+  private boolean accessibleStale = true;
 
   public State(StateContext ctx) {
     this.ctx = ctx;
+    this.termValues = new IntArrayTermMap();
+    this.obtainedIds = new CowIntArray();
+    this.logicValues = new IntArrayTermMap();
+    this.reachable = new CowIntArray();
 
     // TRUE is always set.
     set(Term.true_(), 1);
@@ -23,42 +108,350 @@ public class State {
     }
   }
 
+  private State(State copy) {
+    copy.updateLogic();
+
+    this.ctx = copy.ctx;
+    this.termValues = new IntArrayTermMap(copy.termValues);
+    this.obtained = copy.obtained;
+    this.obtainedIds = copy.obtainedIds.fork();
+    this.logicValues = new IntArrayTermMap(copy.logicValues);
+    this.reachable = copy.reachable.fork();
+    this.logic = copy.logic;
+    this.vanillaTransitions = copy.vanillaTransitions;
+    this.vanillaTransitionsByTerm = copy.vanillaTransitionsByTerm;
+    this.accessible = copy.accessible;
+    this.accessibleStale = copy.accessibleStale;
+  }
+
+  // A copy which can be read from any thread while the original and its StateContext continue to
+  // change on this one. Everything it reads is computed up front, on the calling thread. It must not
+  // be modified.
+  public State frozenCopy() {
+    State copy = new State(this);
+    copy.updateLogic();
+    copy.accessibleValues();
+    copy.frozenTolerances = new MutableTermMap(ctx.tolerances());
+    copy.frozen = true;
+    return copy;
+  }
+
+  @Override
   public StateContext ctx() {
     return ctx;
   }
 
   public Stream<ItemCheck> obtained() {
-    return obtains.stream();
+    Stream.Builder<ItemCheck> builder = Stream.builder();
+    for (Obtained o = obtained; o != null; o = o.next) {
+      builder.add(o.check);
+    }
+    return builder.build();
   }
 
   public boolean isAcquired(ItemCheck check) {
-    return obtains.contains(check);
+    return obtainedIds.getBit(check.id().id());
   }
 
+  @Override
   public int get(Term term) {
-    return termValues.get(term);
+    updateLogic();
+    return Math.max(termValues.get(term), logicValues.get(term));
   }
 
   public void set(Term term, int value) {
+    checkNotFrozen();
+    int prev = termValues.get(term);
     termValues.set(term, value);
+    if (value < prev) {
+      logic = null;
+    }
+    termChanged(term);
   }
 
   public void acquireCheck(ItemCheck check) {
-    if (obtains.add(check)) {
-      check.item().apply(termValues);
+    checkNotFrozen();
+    if (isAcquired(check)) {
+      return;
     }
+
+    obtained = new Obtained(check, obtained);
+    obtainedIds.setBit(check.id().id(), true);
+    check.item().apply(termValues);
+    check.item().effectTerms().forEach(this::termChanged);
   }
 
   public TermMap termValues() {
     return termValues;
   }
 
+  public boolean test(Condition condition) {
+    return condition.test(this);
+  }
+
+  // True if the named location, transition or waypoint is in logic.
+  public boolean isReachable(String name) {
+    updateLogic();
+    int index = logic.indexOf(name);
+    return index == -1 || reachable.getBit(index);
+  }
+
+  // True if the check's location is in logic, and its costs are affordable with acquired items.
+  public boolean isInLogic(ItemCheck check) {
+    return isReachable(check.location().name()) && check.costs().canPay(this, TermMap.empty());
+  }
+
+  // True if the check's location is in logic, and its costs are affordable, with tolerance, using
+  // all items from other checks currently in logic.
+  public boolean isCostAccessible(ItemCheck check) {
+    if (!isReachable(check.location().name())) {
+      return false;
+    }
+
+    IntArrayTermMap accessible = accessibleValues();
+    return check.costs().canPay(new Condition.Context() {
+      @Override
+      public StateContext ctx() {
+        return ctx;
+      }
+
+      @Override
+      public int get(Term term) {
+        return State.this.get(term) + accessible.get(term);
+      }
+    }, frozen ? frozenTolerances : ctx.tolerances());
+  }
+
+  private void termChanged(Term term) {
+    if (!changedTermsSet.get(term.ordinal())) {
+      changedTermsSet.set(term.ordinal());
+      changedTerms.add(term);
+    }
+    accessibleStale = true;
+  }
+
+  private void reexamine(int index) {
+    if (!logic.get(index).test(this)) {
+      reachable.setBit(index, false);
+      return;
+    }
+    if (reachable.getBit(index)) {
+      return;
+    }
+    reachable.setBit(index, true);
+
+    String name = logic.name(index);
+    if (logic.isWaypoint(index)) {
+      Term term = Term.create(name);
+      if (logicValues.get(term) == 0) {
+        logicValues.set(term, 1);
+        termChanged(term);
+      }
+    }
+    for (ItemCheck check : vanillaTransitions.get(name)) {
+      if (get(check.item().term()) == 0) {
+        check.item().apply(logicValues);
+        check.item().effectTerms().forEach(this::termChanged);
+      }
+    }
+  }
+
+  private void rebuildLogic() {
+    logic = ctx.logic();
+    logicValues.clear();
+    reachable.clear();
+    changedTerms.clear();
+    changedTermsSet.clear();
+    accessibleStale = true;
+
+    ImmutableListMultimap.Builder<String, ItemCheck> builder = ImmutableListMultimap.builder();
+    ImmutableListMultimap.Builder<Term, ItemCheck> byTermBuilder = ImmutableListMultimap.builder();
+    ctx.checks().allChecks().filter(c -> c.vanilla() && c.isTransition()).forEach(c -> {
+      builder.put(c.location().name(), c);
+      c.item().effectTerms().forEach(t -> byTermBuilder.put(t, c));
+    });
+    vanillaTransitions = builder.build();
+    vanillaTransitionsByTerm = byTermBuilder.build();
+
+    for (int i = 0; i < logic.size(); i++) {
+      reexamine(i);
+    }
+  }
+
+  // Terms which the given logic definition grants while reachable, under either map.
+  private List<Term> grantedTerms(LogicMap prev, LogicMap next, int index) {
+    List<Term> terms = new ArrayList<>();
+    String name = next.name(index);
+    if (next.isWaypoint(index) || (index < prev.size() && prev.isWaypoint(index))) {
+      terms.add(Term.create(name));
+    }
+    vanillaTransitions.get(name).forEach(c -> c.item().effectTerms().forEach(terms::add));
+    return terms;
+  }
+
+  // Moves 'reachable' to 'next', whose definitions differ from the current logic's only in
+  // 'changed'. Those and everything depending on them, transitively through granted terms, are
+  // reset and re-examined; the rest is kept.
+  private void updateChangedLogic(LogicMap next, Set<String> changed) {
+    LogicMap prev = logic;
+
+    BitSet affected = new BitSet();
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    for (String name : changed) {
+      int index = next.indexOf(name);
+      if (index != -1) {
+        affected.set(index);
+        queue.add(index);
+      }
+    }
+    while (!queue.isEmpty()) {
+      for (Term t : grantedTerms(prev, next, queue.poll())) {
+        for (int dependent : next.dependents(t)) {
+          if (!affected.get(dependent)) {
+            affected.set(dependent);
+            queue.add(dependent);
+          }
+        }
+      }
+    }
+
+    // Past a point, starting over is cheaper.
+    if (affected.cardinality() > next.size() / 2) {
+      rebuildLogic();
+      return;
+    }
+
+    logic = next;
+    // Reachability can change without any term changing.
+    accessibleStale = true;
+    List<Term> cleared = new ArrayList<>();
+    affected.stream().forEach(i -> {
+      reachable.setBit(i, false);
+      for (Term t : grantedTerms(prev, next, i)) {
+        if (logicValues.get(t) != 0) {
+          logicValues.set(t, 0);
+          cleared.add(t);
+          termChanged(t);
+        }
+      }
+    });
+
+    // Unaffected vanilla transitions may grant the same terms.
+    for (Term t : cleared) {
+      for (ItemCheck check : vanillaTransitionsByTerm.get(t)) {
+        int source = logic.indexOf(check.location().name());
+        if (source != -1 && !affected.get(source) && reachable.getBit(source)
+            && get(check.item().term()) == 0) {
+          check.item().apply(logicValues);
+          check.item().effectTerms().forEach(this::termChanged);
+        }
+      }
+    }
+
+    affected.stream().forEach(this::reexamine);
+  }
+
+  // Brings 'reachable' up to date by re-examining only the logic which reads a changed term, until
+  // nothing else changes. Afterwards, queries don't modify this State until it's next modified.
+  void updateLogic() {
+    if (frozen || updating || (logic == ctx.logic() && changedTerms.isEmpty())) {
+      return;
+    }
+
+    updating = true;
+    try {
+      if (logic != ctx.logic()) {
+        Set<String> changed = ctx.logic().changedSince(logic);
+        if (changed == null) {
+          rebuildLogic();
+        } else {
+          updateChangedLogic(ctx.logic(), changed);
+        }
+      }
+
+      while (!changedTerms.isEmpty()) {
+        Term term = changedTerms.poll();
+        changedTermsSet.clear(term.ordinal());
+        for (int index : logic.dependents(term)) {
+          reexamine(index);
+        }
+      }
+    } finally {
+      updating = false;
+    }
+  }
+
+  private IntArrayTermMap accessibleValues() {
+    updateLogic();
+    if (accessible != null && !accessibleStale) {
+      return accessible.values;
+    }
+
+    Accessible prev = accessible;
+    ItemChecks checks = ctx.checks();
+    if (prev == null || prev.logic != logic || prev.checks != checks
+        || prev.checksVersion != checks.version()) {
+      ImmutableListMultimap.Builder<String, ItemCheck> byLocation = ImmutableListMultimap.builder();
+      ImmutableList.Builder<ItemCheck> withCosts = ImmutableList.builder();
+      IntArrayTermMap values = new IntArrayTermMap();
+      CowIntArray ids = new CowIntArray();
+      Iterable<ItemCheck> all = () -> checks.allChecks().iterator();
+      for (ItemCheck check : all) {
+        byLocation.put(check.location().name(), check);
+        if (!check.costs().isNone()) {
+          withCosts.add(check);
+        }
+        updateAccessible(check, values, ids);
+      }
+      accessible = new Accessible(this, values, ids, byLocation.build(), withCosts.build());
+    } else {
+      IntArrayTermMap values = new IntArrayTermMap(prev.values);
+      CowIntArray ids = prev.ids.fork();
+
+      // Locations whose reachability changed.
+      for (int w = 0; w <= logic.size() >>> 5; w++) {
+        int diff = reachable.get(w) ^ prev.reachable.get(w);
+        while (diff != 0) {
+          int index = (w << 5) + Integer.numberOfTrailingZeros(diff);
+          diff &= diff - 1;
+          prev.checksByLocation.get(logic.name(index))
+              .forEach(c -> updateAccessible(c, values, ids));
+        }
+      }
+      // Checks acquired since, which the obtained list has in front of the old head.
+      for (Obtained o = obtained; o != null && o != prev.obtained; o = o.next) {
+        updateAccessible(o.check, values, ids);
+      }
+      // Any term may have changed, so any cost may have become payable or not.
+      prev.checksWithCosts.forEach(c -> updateAccessible(c, values, ids));
+
+      accessible = new Accessible(this, values, ids, prev.checksByLocation, prev.checksWithCosts);
+    }
+    accessibleStale = false;
+    return accessible.values;
+  }
+
+  private void updateAccessible(ItemCheck check, IntArrayTermMap values, CowIntArray ids) {
+    boolean counted = !isAcquired(check) && isInLogic(check);
+    int id = check.id().id();
+    if (counted == ids.getBit(id)) {
+      return;
+    }
+
+    ids.setBit(id, counted);
+    for (Term t : Term.costTerms()) {
+      values.add(t, counted ? check.item().getEffectValue(t) : -check.item().getEffectValue(t));
+    }
+  }
+
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new IllegalStateException("Frozen States can't be modified");
+    }
+  }
+
   public State deepCopy() {
-    State copy = new State(ctx);
-    copy.termValues.clear();
-    copy.termValues.add(this.termValues);
-    copy.obtains.addAll(this.obtains);
-    return copy;
+    return new State(this);
   }
 
 }
@@ -29,6 +29,7 @@ import hollow.knight.main.Main;
 
 /** Mostly immutable context for a State object. */
 public final class StateContext {
+  public static final String TOLERANCES_SAVE_NAME = "ICDLTolerances";
 
   public interface Mutable {
     String saveName();
@@ -38,6 +39,12 @@ public final class StateContext {
     void load(JsonObject obj) throws ICDLException, ParseException;
   }
 
+  // Top-level save data by name, possibly decoded on demand.
+  @FunctionalInterface
+  public interface SaveData {
+    JsonElement get(String name) throws ParseException;
+  }
+
   private final boolean isHKS;
   private final JsonObject rawSpoilerJson;
   private final JsonObject icdlJson;
@@ -55,6 +62,9 @@ public final class StateContext {
 
   private final List<Mutable> mutables;
 
+  private LogicMap logic;
+  private int logicVersion = -1;
+
   public StateContext(boolean isHKS, JsonObject rawSpoilerJson, JsonObject icdlJson,
       String startLoc, CharmIds charmIds, RoomLabels roomLabels, Pools pools, NotchCosts notchCosts,
       LogicEdits logicEdits, DarknessOverrides darkness, ItemChecks checks, TermMap tolerances,
@@ -116,6 +126,26 @@ public final class StateContext {
     return logicEdits;
   }
 
+  // Compiled logic, including any logic edits.
+  public LogicMap logic() {
+    if (logic == null || logicVersion != logicEdits.version()) {
+      ImmutableSet<String> changed = logicEdits.changedSince(logicVersion);
+      if (logic == null || changed == null) {
+        logic = LogicMap.compile(rawSpoilerJson, logicEdits);
+      } else {
+        // Only recompile what was edited.
+        Map<String, String> updates = new HashMap<>();
+        for (String name : changed) {
+          updates.put(name,
+              logicEdits.hasLogic(this, name) ? logicEdits.getLogic(this, name) : null);
+        }
+        logic = logic.recompile(updates, name -> logicEdits.isWaypoint(this, name));
+      }
+      logicVersion = logicEdits.version();
+    }
+    return logic;
+  }
+
   public DarknessOverrides darkness() {
     return darkness;
   }
@@ -136,7 +166,7 @@ public final class StateContext {
     return new Mutable() {
       @Override
       public String saveName() {
-        return "ICDLTolerances";
+        return TOLERANCES_SAVE_NAME;
       }
 
       @Override
@@ -162,9 +192,9 @@ public final class StateContext {
     }
   }
 
-  public void loadMutables(JsonObject obj) throws ICDLException, ParseException {
+  public void loadMutables(SaveData saveData) throws ICDLException, ParseException {
     for (Mutable m : mutables) {
-      JsonElement elem = obj.get(m.saveName());
+      JsonElement elem = saveData.get(m.saveName());
       if (elem != null) {
         m.load(elem.getAsJsonObject());
       }
@@ -213,6 +243,19 @@ public final class StateContext {
         .collect(ImmutableSet.toImmutableSet());
   }
 
+  // Export only replaces members of objects it copies, so members can be shared with the original.
+  private static JsonObject shallowCopy(JsonObject obj) {
+    JsonObject copy = new JsonObject();
+    obj.entrySet().forEach(e -> copy.add(e.getKey(), e.getValue()));
+    return copy;
+  }
+
+  private static JsonArray shallowCopy(JsonArray arr) {
+    JsonArray copy = new JsonArray(arr.size());
+    copy.addAll(arr);
+    return copy;
+  }
+
   private static void sanitizeTags(JsonObject obj, Set<String> filterTags) {
     JsonArray newArr = new JsonArray();
     if (obj.has("tags") && obj.get("tags").isJsonArray()) {
@@ -278,6 +321,19 @@ public final class StateContext {
     return Integer.compare(c1.id().id(), c2.id().id());
   }
 
+  // Thrown from parallel streams, to be unwrapped by the caller.
+  private static final class WrappedICDLException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    WrappedICDLException(ICDLException cause) {
+      super(cause);
+    }
+
+    ICDLException unwrap() {
+      return (ICDLException) getCause();
+    }
+  }
+
   private JsonObject calculatePlacementsJson(Map<Term, JsonObject> itemJsons,
       Map<String, JsonObject> locationJsons) throws ICDLException {
     JsonObject placements = new JsonObject();
@@ -290,81 +346,101 @@ public final class StateContext {
       Collections.sort(checksByLocation.get(k), StateContext::containerCompare);
     }
 
-    // Output by location.
-    for (String locName : checksByLocation.keySet()) {
-      JsonObject locObj = locationJsons.get(locName).getAsJsonObject().deepCopy();
-
-      Location loc = checks().getLocation(locName);
-      if (!loc.isShop()) {
-        Set<Costs> costsSet = checksByLocation.get(locName).stream().map(c -> c.costs())
-            .collect(ImmutableSet.toImmutableSet());
-        if (costsSet.size() != 1) {
-          throw new ICDLException("Error: Multiple items at " + locName
-              + " have differing costs. This is only supported for shops.");
-        }
-
-        Costs costs = costsSet.iterator().next();
-        if (hasInherentCost(locObj) && !costs.isNone()) {
-          throw new ICDLException("Error: Location '" + loc.name()
-              + "' has an inherent cost. It cannot be assigned a separate cost");
+    // Locations are independent, so build them in parallel, then output in order.
+    ImmutableList<String> locNames = ImmutableList.copyOf(checksByLocation.keySet());
+    List<JsonObject> locObjs;
+    try {
+      locObjs = locNames.parallelStream().map(locName -> {
+        try {
+          return calculatePlacementJson(locName, checksByLocation.get(locName), itemJsons,
+              locationJsons);
+        } catch (ICDLException ex) {
+          throw new WrappedICDLException(ex);
         }
+      }).collect(ImmutableList.toImmutableList());
+    } catch (WrappedICDLException ex) {
+      throw ex.unwrap();
+    }
+    for (int i = 0; i < locNames.size(); i++) {
+      placements.add(locNames.get(i), locObjs.get(i));
+    }
 
-        locObj.add("Cost", costsSet.iterator().next().toICDLJson());
+    JsonObject origPlacements = icdlJson.get("Placements").getAsJsonObject();
+    for (String name : origPlacements.keySet()) {
+      if (!placements.keySet().contains(name)) {
+        placements.add(name, origPlacements.get(name));
       }
+    }
 
-      // Add rando placement tags.
-      JsonArray tagsArr = locObj.get("tags").getAsJsonArray().deepCopy();
-      JsonObject pTags = new JsonObject();
-      pTags.addProperty("$type", "RandomizerMod.IC.RandoPlacementTag, RandomizerMod");
-      JsonArray ids = new JsonArray();
-      checksByLocation.get(locName).stream().mapToInt(c -> c.id().id()).forEach(ids::add);
-      pTags.add("ids", ids);
-      tagsArr.add(pTags);
-      locObj.add("tags", tagsArr);
-
-      // Add items
-      JsonArray itemsArr = new JsonArray();
-      for (ItemCheck check : checksByLocation.get(locName)) {
-        JsonObject itemObj;
-        if (check.item().isCustom()) {
-          itemObj = check.item().toICDLJson();
-        } else if (itemJsons.containsKey(check.item().term())) {
-          itemObj = itemJsons.get(check.item().term()).deepCopy();
-        } else {
-          throw new ICDLException("No item json for: " + check.item().term());
-        }
-        tagsArr =
-            itemObj.has("tags") ? itemObj.get("tags").getAsJsonArray().deepCopy() : new JsonArray();
-
-        if (loc.isShop()) {
-          JsonObject costTag = new JsonObject();
-          costTag.addProperty("$type", "ItemChanger.CostTag, ItemChanger");
-          costTag.add("Cost", check.costs().toICDLJson());
-          tagsArr.add(costTag);
-        }
+    return placements;
+  }
+
+  private JsonObject calculatePlacementJson(String locName, List<ItemCheck> locChecks,
+      Map<Term, JsonObject> itemJsons, Map<String, JsonObject> locationJsons)
+      throws ICDLException {
+    JsonObject locObj = shallowCopy(locationJsons.get(locName));
 
-        JsonObject randoTag = new JsonObject();
-        randoTag.addProperty("$type", "RandomizerMod.IC.RandoItemTag, RandomizerMod");
-        randoTag.addProperty("id", check.id().id());
-        randoTag.addProperty("obtained", false);
-        tagsArr.add(randoTag);
+    Location loc = checks().getLocation(locName);
+    if (!loc.isShop()) {
+      Set<Costs> costsSet =
+          locChecks.stream().map(c -> c.costs()).collect(ImmutableSet.toImmutableSet());
+      if (costsSet.size() != 1) {
+        throw new ICDLException("Error: Multiple items at " + locName
+            + " have differing costs. This is only supported for shops.");
+      }
 
-        itemObj.add("tags", tagsArr);
-        itemsArr.add(itemObj);
+      Costs costs = costsSet.iterator().next();
+      if (hasInherentCost(locObj) && !costs.isNone()) {
+        throw new ICDLException("Error: Location '" + loc.name()
+            + "' has an inherent cost. It cannot be assigned a separate cost");
       }
-      locObj.add("Items", itemsArr);
 
-      placements.add(locName, locObj);
+      locObj.add("Cost", costsSet.iterator().next().toICDLJson());
     }
 
-    JsonObject origPlacements = icdlJson.get("Placements").getAsJsonObject();
-    for (String name : origPlacements.keySet()) {
-      if (!placements.keySet().contains(name)) {
-        placements.add(name, origPlacements.get(name));
+    // Add rando placement tags.
+    JsonArray tagsArr = shallowCopy(locObj.get("tags").getAsJsonArray());
+    JsonObject pTags = new JsonObject();
+    pTags.addProperty("$type", "RandomizerMod.IC.RandoPlacementTag, RandomizerMod");
+    JsonArray ids = new JsonArray();
+    locChecks.stream().mapToInt(c -> c.id().id()).forEach(ids::add);
+    pTags.add("ids", ids);
+    tagsArr.add(pTags);
+    locObj.add("tags", tagsArr);
+
+    // Add items
+    JsonArray itemsArr = new JsonArray();
+    for (ItemCheck check : locChecks) {
+      JsonObject itemObj;
+      if (check.item().isCustom()) {
+        itemObj = check.item().toICDLJson();
+      } else if (itemJsons.containsKey(check.item().term())) {
+        itemObj = shallowCopy(itemJsons.get(check.item().term()));
+      } else {
+        throw new ICDLException("No item json for: " + check.item().term());
       }
+      tagsArr =
+          itemObj.has("tags") ? shallowCopy(itemObj.get("tags").getAsJsonArray()) : new JsonArray();
+
+      if (loc.isShop()) {
+        JsonObject costTag = new JsonObject();
+        costTag.addProperty("$type", "ItemChanger.CostTag, ItemChanger");
+        costTag.add("Cost", check.costs().toICDLJson());
+        tagsArr.add(costTag);
+      }
+
+      JsonObject randoTag = new JsonObject();
+      randoTag.addProperty("$type", "RandomizerMod.IC.RandoItemTag, RandomizerMod");
+      randoTag.addProperty("id", check.id().id());
+      randoTag.addProperty("obtained", false);
+      tagsArr.add(randoTag);
+
+      itemObj.add("tags", tagsArr);
+      itemsArr.add(itemObj);
     }
+    locObj.add("Items", itemsArr);
 
-    return placements;
+    return locObj;
   }
 
   private JsonObject withICDLCharmCosts(JsonObject json) {
@@ -389,7 +465,7 @@ public final class StateContext {
           newEdits.add(notchCost);
         }
 
-        JsonObject newModule = module.getAsJsonObject().deepCopy();
+        JsonObject newModule = shallowCopy(module.getAsJsonObject());
         newModule.add("PDEdits", newEdits);
         newModules.add(newModule);
       } else {
@@ -397,7 +473,7 @@ public final class StateContext {
       }
     }
 
-    JsonObject mods = json.deepCopy();
+    JsonObject mods = shallowCopy(json);
     mods.add("Modules", newModules);
     return mods;
   }
@@ -435,7 +511,7 @@ public final class StateContext {
       JsonObject item = obj.get("Item").getAsJsonObject();
       itemsJson.put(Term.create(item.get("Name").getAsString()), item);
 
-      JsonObject loc = obj.get("Location").getAsJsonObject().deepCopy();
+      JsonObject loc = shallowCopy(obj.get("Location").getAsJsonObject());
       String locName =
           (loc.has("logic") ? loc.get("logic").getAsJsonObject() : loc).get("Name").getAsString();
       loc.add("costs", JsonNull.INSTANCE);
@@ -456,7 +532,7 @@ public final class StateContext {
       JsonObject placement = new JsonObject();
       placement.add("Item", item.toRawSpoilerJson(itemsJson));
 
-      JsonObject locObj = locationsJson.get(c.location().name()).deepCopy();
+      JsonObject locObj = shallowCopy(locationsJson.get(c.location().name()));
       locObj.add("costs", c.costs().toRawSpoilerJson());
       placement.add("Location", locObj);
 
@@ -490,12 +566,12 @@ public final class StateContext {
   }
 
   private JsonObject updateInitialProgression(JsonObject initialProgression) {
-    JsonObject obj = initialProgression.deepCopy();
+    JsonObject obj = shallowCopy(initialProgression);
     JsonArray setters = obj.get("Setters").getAsJsonArray();
 
     JsonArray newSetters = new JsonArray();
     for (JsonElement setter : setters) {
-      JsonObject sObj = setter.getAsJsonObject().deepCopy();
+      JsonObject sObj = shallowCopy(setter.getAsJsonObject());
       Term t = Term.create(sObj.get("Term").getAsString());
       if (Term.costTerms().contains(t)) {
         sObj.addProperty("Value", tolerances().get(t));
@@ -506,16 +582,16 @@ public final class StateContext {
     return obj;
   }
 
-  public void saveICDL(Path p) throws IOException, ICDLException {
+  private JsonObject createICDLJson() throws ICDLException {
     // Sanitize items and locations into maps.
     Map<Term, JsonObject> itemJsons = new HashMap<>();
     Map<String, JsonObject> locationJsons = new HashMap<>();
     JsonObject placements = icdlJson.get("Placements").getAsJsonObject();
     for (String locName : placements.keySet()) {
       try {
-        JsonObject locJson = placements.get(locName).getAsJsonObject().deepCopy();
+        JsonObject locJson = shallowCopy(placements.get(locName).getAsJsonObject());
         for (JsonElement item : locJson.get("Items").getAsJsonArray()) {
-          JsonObject itemObj = item.getAsJsonObject().deepCopy();
+          JsonObject itemObj = shallowCopy(item.getAsJsonObject());
           String itemName = itemObj.get("name").getAsString();
           sanitizeItem(itemObj);
           itemJsons.put(Term.create(itemName), itemObj);
@@ -527,12 +603,15 @@ public final class StateContext {
       }
     }
 
-    JsonObject newICDLJson = icdlJson.deepCopy();
+    JsonObject newICDLJson = shallowCopy(icdlJson);
     newICDLJson.add("Placements", calculatePlacementsJson(itemJsons, locationJsons));
     newICDLJson.add("mods", withICDLCharmCosts(newICDLJson.get("mods").getAsJsonObject()));
     newICDLJson.add("TransitionOverrides", calculateTransitionOverrides());
+    return newICDLJson;
+  }
 
-    JsonObject newRawSpoilerJson = rawSpoilerJson.deepCopy();
+  private JsonObject createRawSpoilerJson() throws ICDLException {
+    JsonObject newRawSpoilerJson = shallowCopy(rawSpoilerJson);
     newRawSpoilerJson.add("itemPlacements",
         createNewSpoilerItemPlacements(rawSpoilerJson.get("itemPlacements").getAsJsonArray()));
     newRawSpoilerJson.add("transitionPlacements",
@@ -540,7 +619,43 @@ public final class StateContext {
     newRawSpoilerJson.add("notchCosts", notchCosts().toRawSpoilerJsonArray());
     newRawSpoilerJson.add("InitialProgression",
         updateInitialProgression(newRawSpoilerJson.get("InitialProgression").getAsJsonObject()));
-    logicEdits.updateLM(newRawSpoilerJson.get("LM").getAsJsonObject());
+    newRawSpoilerJson.add("LM", logicEdits.updateLM(newRawSpoilerJson.get("LM").getAsJsonObject()));
+    return newRawSpoilerJson;
+  }
+
+  private static JsonObject createPackJson(String packName, String packDesc, String authorName) {
+    JsonObject packJson = new JsonObject();
+    packJson.addProperty("Author", authorName + "(HKSV " + Main.version() + ", "
+        + LocalDate.now().format(DateTimeFormatter.ISO_DATE) + ")");
+    packJson.addProperty("Name", packName.trim());
+    packJson.addProperty("Description", packDesc.trim());
+    packJson.addProperty("SupportsRandoTracking", true);
+    return packJson;
+  }
+
+  private static void writeICDL(Path p, JsonObject icdlJson, JsonObject packJson,
+      JsonObject rawSpoilerJson) throws IOException {
+    Files.createDirectories(p);
+    Path icdlPath = Paths.get(p.toString(), "ic.json");
+    JsonUtil.writeJson(icdlPath.toString(), icdlJson);
+
+    Path packPath = Paths.get(p.toString(), "pack.json");
+    JsonUtil.writeJson(packPath.toString(), packJson);
+
+    Path ctxPath = Paths.get(p.toString(), "ctx.json");
+    JsonUtil.writeJson(ctxPath.toString(), rawSpoilerJson);
+  }
+
+  // Exports without prompting for pack details.
+  public void saveICDL(Path p, String packName, String packDesc, String authorName)
+      throws IOException, ICDLException {
+    writeICDL(p, createICDLJson(), createPackJson(packName, packDesc, authorName),
+        createRawSpoilerJson());
+  }
+
+  public void saveICDL(Path p) throws IOException, ICDLException {
+    JsonObject newICDLJson = createICDLJson();
+    JsonObject newRawSpoilerJson = createRawSpoilerJson();
 
     String packName = JOptionPane.showInputDialog(null, "Name?");
     if (packName == null || packName.trim().isEmpty()) {
@@ -557,22 +672,7 @@ public final class StateContext {
       authorName = authorName.trim() + " ";
     }
 
-    JsonObject packJson = new JsonObject();
-    packJson.addProperty("Author", authorName + "(HKSV " + Main.version() + ", "
-        + LocalDate.now().format(DateTimeFormatter.ISO_DATE) + ")");
-    packJson.addProperty("Name", packName.trim());
-    packJson.addProperty("Description", packDesc.trim());
-    packJson.addProperty("SupportsRandoTracking", true);
-
-    Files.createDirectories(p);
-    Path icdlPath = Paths.get(p.toString(), "ic.json");
-    JsonUtil.writeJson(icdlPath.toString(), newICDLJson);
-
-    Path packPath = Paths.get(p.toString(), "pack.json");
-    JsonUtil.writeJson(packPath.toString(), packJson);
-
-    Path ctxPath = Paths.get(p.toString(), "ctx.json");
-    JsonUtil.writeJson(ctxPath.toString(), newRawSpoilerJson);
+    writeICDL(p, newICDLJson, createPackJson(packName, packDesc, authorName), newRawSpoilerJson);
   }
 
 }
@@ -1,24 +1,87 @@
 package hollow.knight.logic;
 
-import com.google.auto.value.AutoValue;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 import com.google.common.collect.ImmutableSet;
 
 /**
  * A Term is a name with an integer value associated. It may be binary (such as acquiring an item,
  * defeating a boss, accessing a room) or it may be a multi-valued name such as boss essence,
  * dreamers, grimmkin flames, etc.
+ *
+ * <p>
+ * Terms are interned: each name maps to exactly one Term, with a stable, dense ordinal suitable
+ * for indexing arrays.
  */
-@AutoValue
-public abstract class Term implements Comparable<Term> {
-  public abstract String name();
+public final class Term implements Comparable<Term> {
+  private static final ConcurrentHashMap<String, Term> REGISTRY = new ConcurrentHashMap<>();
+
+  // Append-only, and only written under REGISTER_LOCK. A slot is always written before 'count'
+  // covers it, so readers need no lock.
+  private static final Object REGISTER_LOCK = new Object();
+  private static volatile Term[] byOrdinal = new Term[256];
+  private static volatile int count = 0;
+
+  private final String name;
+  private final int ordinal;
+
+  private Term(String name, int ordinal) {
+    this.name = name;
+    this.ordinal = ordinal;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public int ordinal() {
+    return ordinal;
+  }
+
+  @Override
+  public int hashCode() {
+    return ordinal;
+  }
+
+  @Override
+  public String toString() {
+    return "Term{name=" + name + "}";
+  }
 
   @Override
-  public final int compareTo(Term term) {
+  public int compareTo(Term term) {
     return name().compareTo(term.name());
   }
 
   public static Term create(String name) {
-    return new AutoValue_Term(name);
+    Term term = REGISTRY.get(name);
+    return term != null ? term : REGISTRY.computeIfAbsent(name, Term::register);
+  }
+
+  private static Term register(String name) {
+    synchronized (REGISTER_LOCK) {
+      Term term = new Term(name, count);
+      Term[] terms = byOrdinal;
+      if (term.ordinal == terms.length) {
+        terms = Arrays.copyOf(terms, terms.length * 2);
+      }
+      terms[term.ordinal] = term;
+      byOrdinal = terms;
+      count = term.ordinal + 1;
+      return term;
+    }
+  }
+
+  public static Term forOrdinal(int ordinal) {
+    if (ordinal >= count) {
+      throw new IndexOutOfBoundsException("No term with ordinal " + ordinal);
+    }
+    return byOrdinal[ordinal];
+  }
+
+  // The number of distinct Terms created so far.
+  public static int count() {
+    return count;
   }
 
   // TODO: Order these.
@@ -31,6 +31,11 @@ public final class TermCost implements Cost {
     return this.term.equals(term) ? value : 0;
   }
 
+  @Override
+  public boolean canPay(Condition.Context values, TermMap tolerances) {
+    return values.get(term) >= value + tolerances.get(term);
+  }
+
   @Override
   public String debugString() {
     return value + " " + term.name().toLowerCase();
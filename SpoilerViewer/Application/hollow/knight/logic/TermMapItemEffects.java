@@ -7,9 +7,23 @@ public final class TermMapItemEffects implements ItemEffects {
   private final ImmutableTermMap effects;
   private final ImmutableTermMap caps;
 
+  // Flattened effects, so apply() doesn't iterate or unbox map entries.
+  private final Term[] effectTerms;
+  private final int[] effectValues;
+  private final int[] effectCaps;
+
   public TermMapItemEffects(TermMap effects, TermMap caps) {
     this.effects = ImmutableTermMap.copyOf(effects);
     this.caps = ImmutableTermMap.copyOf(caps);
+
+    this.effectTerms = this.effects.terms().toArray(new Term[0]);
+    this.effectValues = new int[effectTerms.length];
+    this.effectCaps = new int[effectTerms.length];
+    for (int i = 0; i < effectTerms.length; i++) {
+      Term t = effectTerms[i];
+      effectValues[i] = this.effects.get(t);
+      effectCaps[i] = this.caps.terms().contains(t) ? this.caps.get(t) : Integer.MAX_VALUE;
+    }
   }
 
   @Override
@@ -28,15 +42,10 @@ public final class TermMapItemEffects implements ItemEffects {
   }
 
   @Override
-  public void apply(MutableTermMap ctx) {
-    for (Term t : effects.terms()) {
-      int cap = Integer.MAX_VALUE;
-      if (caps.terms().contains(t)) {
-        cap = caps.get(t);
-      }
-
-      int newVal = Math.min(ctx.get(t) + effects.get(t), cap);
-      ctx.set(t, newVal);
+  public void apply(IntArrayTermMap ctx) {
+    for (int i = 0; i < effectTerms.length; i++) {
+      Term t = effectTerms[i];
+      ctx.set(t, Math.min(ctx.get(t) + effectValues[i], effectCaps[i]));
     }
   }
 }
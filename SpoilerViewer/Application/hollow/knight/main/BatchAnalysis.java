@@ -0,0 +1,239 @@
+package hollow.knight.main;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonObject;
+import hollow.knight.io.FileOpener;
+import hollow.knight.io.JsonUtil;
+import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.LogicMap;
+import hollow.knight.logic.ParseException;
+import hollow.knight.logic.Query;
+import hollow.knight.logic.State;
+import hollow.knight.logic.StateContext;
+
+/**
+ * Headless analysis of every spoiler under a directory.
+ *
+ * <p>
+ * Usage: --batch DIR [--query FILE.hksq] [--format csv|jsonl] [--out FILE] [--threads N]
+ *
+ * <p>
+ * Spoilers are analyzed concurrently, with a bounded number in memory at once. One row is written
+ * per spoiler, in path order, as soon as it and all those before it are done.
+ */
+public final class BatchAnalysis {
+
+  private enum Format {
+    CSV, JSONL;
+  }
+
+  private static final class Options {
+    Path dir = null;
+    Query query = state -> "";
+    Format format = Format.CSV;
+    // Null for stdout.
+    Path out = null;
+    int threads = Runtime.getRuntime().availableProcessors();
+  }
+
+  @AutoValue
+  abstract static class Row {
+    abstract Path path();
+
+    abstract int checks();
+
+    abstract int inLogic();
+
+    abstract int logicSize();
+
+    abstract int reachableLogic();
+
+    abstract int logicErrors();
+
+    abstract long millis();
+
+    abstract String queryResult();
+
+    abstract String error();
+
+    static Row create(Path path, int checks, int inLogic, int logicSize, int reachableLogic,
+        int logicErrors, long millis, String queryResult) {
+      return new AutoValue_BatchAnalysis_Row(path, checks, inLogic, logicSize, reachableLogic,
+          logicErrors, millis, queryResult, "");
+    }
+
+    static Row error(Path path, long millis, Throwable error) {
+      return new AutoValue_BatchAnalysis_Row(path, 0, 0, 0, 0, 0, millis, "",
+          error.getClass().getSimpleName() + ": " + error.getMessage());
+    }
+  }
+
+  private static final ImmutableList<String> COLUMNS = ImmutableList.of("Path", "Checks",
+      "InLogic", "LogicSize", "ReachableLogic", "LogicErrors", "Millis", "Query", "Error");
+
+  public static boolean isBatch(String[] args) {
+    return args.length > 0 && args[0].equals("--batch");
+  }
+
+  private static Options parseOptions(String[] args) throws ParseException {
+    Options options = new Options();
+    for (int i = 0; i < args.length; i += 2) {
+      if (i + 1 >= args.length) {
+        throw new ParseException("Missing value for " + args[i]);
+      }
+
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "--batch":
+          options.dir = Paths.get(value);
+          break;
+        case "--query":
+          options.query = Query.parse(JsonUtil.loadPath(Paths.get(value)).getAsJsonObject());
+          break;
+        case "--format":
+          try {
+            options.format = Format.valueOf(value.toUpperCase());
+          } catch (IllegalArgumentException ex) {
+            throw new ParseException("Unknown format: " + value);
+          }
+          break;
+        case "--out":
+          options.out = Paths.get(value);
+          break;
+        case "--threads":
+          try {
+            options.threads = Math.max(1, Integer.parseInt(value));
+          } catch (NumberFormatException ex) {
+            throw new ParseException("Bad thread count: " + value);
+          }
+          break;
+        default:
+          throw new ParseException("Unknown argument: " + args[i]);
+      }
+    }
+
+    if (options.dir == null) {
+      throw new ParseException("--batch requires a directory");
+    }
+    return options;
+  }
+
+  private static boolean isSpoiler(Path path) {
+    String name = path.getFileName().toString();
+    return name.equals("RawSpoiler.json") || name.equals("ctx.json") || name.endsWith(".hks");
+  }
+
+  private static Row analyze(Path path, Query query) {
+    long start = System.currentTimeMillis();
+    try {
+      StateContext ctx = new FileOpener(ImmutableList.of()).openFile(path);
+      State state = new State(ctx);
+
+      ImmutableList<ItemCheck> checks = ctx.checks().allChecks()
+          .collect(ImmutableList.toImmutableList());
+      int inLogic = (int) checks.stream().filter(state::isInLogic).count();
+
+      LogicMap logic = ctx.logic();
+      int reachable = (int) logic.names().stream().filter(state::isReachable).count();
+
+      String queryResult = query.execute(state);
+      return Row.create(path, checks.size(), inLogic, logic.size(), reachable,
+          logic.errors().size(), System.currentTimeMillis() - start, queryResult);
+    } catch (Exception ex) {
+      return Row.error(path, System.currentTimeMillis() - start, ex);
+    }
+  }
+
+  private static String csvField(String s) {
+    if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
+      return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+    return s;
+  }
+
+  private static ImmutableList<String> fields(Row row) {
+    return ImmutableList.of(row.path().toString(), String.valueOf(row.checks()),
+        String.valueOf(row.inLogic()), String.valueOf(row.logicSize()),
+        String.valueOf(row.reachableLogic()), String.valueOf(row.logicErrors()),
+        String.valueOf(row.millis()), row.queryResult(), row.error());
+  }
+
+  private static void write(PrintWriter out, Format format, Row row) {
+    if (format == Format.CSV) {
+      out.println(fields(row).stream().map(BatchAnalysis::csvField)
+          .collect(Collectors.joining(",")));
+    } else {
+      JsonObject obj = new JsonObject();
+      obj.addProperty("Path", row.path().toString());
+      obj.addProperty("Checks", row.checks());
+      obj.addProperty("InLogic", row.inLogic());
+      obj.addProperty("LogicSize", row.logicSize());
+      obj.addProperty("ReachableLogic", row.reachableLogic());
+      obj.addProperty("LogicErrors", row.logicErrors());
+      obj.addProperty("Millis", row.millis());
+      obj.addProperty("Query", row.queryResult());
+      obj.addProperty("Error", row.error());
+      out.println(obj.toString());
+    }
+    out.flush();
+  }
+
+  public static void run(String[] args) throws ParseException, IOException, InterruptedException {
+    Options options = parseOptions(args);
+
+    ImmutableList<Path> paths;
+    try (Stream<Path> files = Files.walk(options.dir)) {
+      paths = files.filter(Files::isRegularFile).filter(BatchAnalysis::isSpoiler).sorted()
+          .collect(ImmutableList.toImmutableList());
+    }
+
+    Writer writer = options.out == null
+        ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+        : Files.newBufferedWriter(options.out, StandardCharsets.UTF_8);
+    ExecutorService executor = Executors.newFixedThreadPool(options.threads);
+    try (PrintWriter out = new PrintWriter(writer)) {
+      if (options.format == Format.CSV) {
+        out.println(String.join(",", COLUMNS));
+      }
+
+      // Each loaded spoiler holds a full JSON tree, so cap how many are in flight.
+      int window = options.threads * 2;
+      Deque<Future<Row>> inFlight = new ArrayDeque<>();
+      Iterator<Path> pending = paths.iterator();
+      while (pending.hasNext() || !inFlight.isEmpty()) {
+        while (pending.hasNext() && inFlight.size() < window) {
+          Path path = pending.next();
+          inFlight.add(executor.submit(() -> analyze(path, options.query)));
+        }
+
+        try {
+          write(out, options.format, inFlight.poll().get());
+        } catch (ExecutionException ex) {
+          throw new IOException(ex.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private BatchAnalysis() {}
+}
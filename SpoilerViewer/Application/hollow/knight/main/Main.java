@@ -79,6 +79,11 @@ public final class Main {
   }
 
   public static void main(String[] args) throws Exception {
+    if (BatchAnalysis.isBatch(args)) {
+      BatchAnalysis.run(args);
+      return;
+    }
+
     Config cfg = loadConfig(args);
 
     StateContext ctx;
@@ -0,0 +1,33 @@
+package hollow.knight.bench;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.results.format.ResultFormatType;
+
+/**
+ * Runs benchmarks with JMH's usual arguments, but writes JSON results by default so runs can be
+ * compared across versions.
+ */
+public final class BenchmarkMain {
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams()
+        || cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+      org.openjdk.jmh.Main.main(args);
+      return;
+    }
+
+    OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(cmd);
+    if (!cmd.getResultFormat().hasValue()) {
+      builder.resultFormat(ResultFormatType.JSON);
+    }
+    if (!cmd.getResult().hasValue()) {
+      builder.result("jmh-result.json");
+    }
+    new Runner(builder.build()).run();
+  }
+
+  private BenchmarkMain() {}
+}
@@ -0,0 +1,60 @@
+package hollow.knight.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import hollow.knight.logic.StateContext;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExportBenchmarks {
+  // An ICDL ctx.json, with its ic.json alongside.
+  @Param("fixtures/icdl/ctx.json")
+  public String icdlContext;
+
+  private StateContext ctx;
+  private Path out;
+
+  @Setup
+  public void setUp() throws Exception {
+    ctx = Fixtures.load(icdlContext);
+    // ICDL export requires dense check ids.
+    ctx.checks().compact();
+    out = Files.createTempDirectory("hksv-bench");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    // Children sort after their parents, so delete in reverse.
+    try (Stream<Path> paths = Files.walk(out)) {
+      for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(p);
+      }
+    }
+  }
+
+  @Benchmark
+  public Path saveICDL() throws Exception {
+    ctx.saveICDL(out, "Benchmark", "Benchmark pack", "Benchmark ");
+    return out;
+  }
+}
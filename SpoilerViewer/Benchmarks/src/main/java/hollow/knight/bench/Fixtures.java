@@ -0,0 +1,47 @@
+package hollow.knight.bench;
+
+import java.nio.file.Paths;
+import java.util.Comparator;
+import com.google.common.collect.ImmutableList;
+import hollow.knight.io.FileOpener;
+import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.State;
+import hollow.knight.logic.StateContext;
+
+/** Shared setup for benchmarks. */
+final class Fixtures {
+  static StateContext load(String path) throws Exception {
+    return new FileOpener(ImmutableList.of()).openFile(Paths.get(path).toAbsolutePath());
+  }
+
+  static ImmutableList<ItemCheck> checksById(StateContext ctx) {
+    return ctx.checks().allChecks().sorted(Comparator.comparing(c -> c.id().id()))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  // A plausible route: repeatedly takes the lowest-id check in logic, up to 'limit' checks.
+  static ImmutableList<ItemCheck> greedyRoute(StateContext ctx, int limit) {
+    ImmutableList<ItemCheck> checks = checksById(ctx);
+    State state = new State(ctx);
+    ImmutableList.Builder<ItemCheck> route = ImmutableList.builder();
+
+    int size = 0;
+    boolean progress = true;
+    while (progress && size < limit) {
+      progress = false;
+      for (ItemCheck check : checks) {
+        if (!state.isAcquired(check) && state.isInLogic(check)) {
+          state.acquireCheck(check);
+          route.add(check);
+          progress = true;
+          if (++size == limit) {
+            break;
+          }
+        }
+      }
+    }
+    return route.build();
+  }
+
+  private Fixtures() {}
+}
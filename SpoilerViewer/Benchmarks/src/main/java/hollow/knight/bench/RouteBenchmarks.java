@@ -0,0 +1,82 @@
+package hollow.knight.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import hollow.knight.gui.RouteListModel;
+import hollow.knight.gui.TransitionData;
+import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.StateContext;
+
+// Each benchmark leaves the route as it found it, so the route length stays fixed.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteBenchmarks {
+  @Param("fixtures/RawSpoiler.json")
+  public String spoiler;
+
+  // The checked-in fixture routes about 300 checks; longer routes need a larger spoiler.
+  @Param({"100", "250"})
+  public int routeLength;
+
+  private RouteListModel model;
+  private ItemCheck unrouted;
+
+  @Setup
+  public void setUp() throws Exception {
+    StateContext ctx = Fixtures.load(spoiler);
+    model = new RouteListModel(TransitionData.load(ctx.roomLabels()), ctx);
+
+    ImmutableList<ItemCheck> route = Fixtures.greedyRoute(ctx, routeLength);
+    if (route.size() != routeLength) {
+      throw new IllegalStateException(
+          spoiler + " only provides a route of " + route.size() + " checks, not " + routeLength);
+    }
+    route.forEach(model::addToRoute);
+
+    ImmutableSet<ItemCheck> routed = ImmutableSet.copyOf(route);
+    unrouted = Fixtures.checksById(ctx).stream().filter(c -> !routed.contains(c)).findFirst()
+        .orElseThrow(() -> new IllegalStateException("Every check is routed"));
+  }
+
+  @Benchmark
+  public int addAndRemoveLast() {
+    model.addToRoute(unrouted);
+    model.removeCheck(model.getSize() - 1);
+    return model.getSize();
+  }
+
+  @Benchmark
+  public int swapMiddle() {
+    int mid = model.getSize() / 2;
+    model.swap(mid - 1, mid);
+    model.swap(mid - 1, mid);
+    return model.getSize();
+  }
+
+  @Benchmark
+  public int removeAndReinsertMiddle() {
+    int mid = model.getSize() / 2;
+    ItemCheck check = model.getCheck(mid);
+    model.removeCheck(mid);
+    model.setInsertionPoint(mid);
+    model.addToRoute(check);
+    model.setInsertionPoint(model.getSize());
+    return model.getSize();
+  }
+}
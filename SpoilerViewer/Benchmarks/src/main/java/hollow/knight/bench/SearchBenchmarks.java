@@ -0,0 +1,97 @@
+package hollow.knight.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.common.collect.ImmutableList;
+import hollow.knight.gui.ExclusionFilters;
+import hollow.knight.gui.ItemCategoryFilters;
+import hollow.knight.gui.RoomFilters;
+import hollow.knight.gui.RouteListModel;
+import hollow.knight.gui.SearchEngine;
+import hollow.knight.gui.SearchResult;
+import hollow.knight.gui.TextFilter;
+import hollow.knight.gui.TransitionData;
+import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.StateContext;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmarks {
+  @Param("fixtures/RawSpoiler.json")
+  public String spoiler;
+
+  @Param({"NONE", "TEXT", "CATEGORIES", "ROOMS", "EXCLUSIONS", "ALL"})
+  public String filters;
+
+  private SearchEngine engine;
+  private hollow.knight.logic.State state;
+  private ImmutableList<ItemCheck> checks;
+  private int checksVersion;
+  private ImmutableList<Integer> notchCosts;
+
+  @Setup
+  public void setUp() throws Exception {
+    StateContext ctx = Fixtures.load(spoiler);
+    TransitionData transitionData = TransitionData.load(ctx.roomLabels());
+    RouteListModel routeListModel = new RouteListModel(transitionData, ctx);
+    ImmutableList<ItemCheck> route = Fixtures.greedyRoute(ctx, Integer.MAX_VALUE);
+    route.subList(0, route.size() / 2).forEach(routeListModel::addToRoute);
+
+    TextFilter text = new TextFilter(transitionData, ctx.roomLabels(), () -> ctx);
+    text.setText("ar");
+    ItemCategoryFilters categories = new ItemCategoryFilters();
+    RoomFilters rooms = new RoomFilters(ctx.roomLabels());
+    ExclusionFilters exclusions = new ExclusionFilters(ctx.roomLabels(), routeListModel);
+
+    List<SearchResult.Filter> selected;
+    switch (filters) {
+      case "NONE":
+        selected = ImmutableList.of();
+        break;
+      case "TEXT":
+        selected = ImmutableList.of(text);
+        break;
+      case "CATEGORIES":
+        selected = ImmutableList.of(categories);
+        break;
+      case "ROOMS":
+        selected = ImmutableList.of(rooms);
+        break;
+      case "EXCLUSIONS":
+        selected = ImmutableList.of(exclusions);
+        break;
+      case "ALL":
+        selected = ImmutableList.of(text, categories, rooms, exclusions);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown filters: " + filters);
+    }
+
+    engine = new SearchEngine(transitionData, ctx.roomLabels(), selected);
+    state = routeListModel.currentState().frozenCopy();
+    checks = ctx.checks().allChecks().collect(ImmutableList.toImmutableList());
+    checksVersion = ctx.checks().version();
+    notchCosts = ctx.notchCosts().costs();
+  }
+
+  @Benchmark
+  public ImmutableList<SearchResult> search() {
+    engine.prepareSearch();
+    return engine.getSearchResults(state, checks, checksVersion, notchCosts, () -> false);
+  }
+}
@@ -0,0 +1,64 @@
+package hollow.knight.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.common.collect.ImmutableList;
+import hollow.knight.logic.ItemCheck;
+import hollow.knight.logic.ItemChecks;
+import hollow.knight.logic.StateContext;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateBenchmarks {
+  @Param("fixtures/RawSpoiler.json")
+  public String spoiler;
+
+  private StateContext ctx;
+  private ImmutableList<ItemCheck> route;
+  private hollow.knight.logic.State midRoute;
+  private ItemCheck next;
+
+  @Setup
+  public void setUp() throws Exception {
+    ctx = Fixtures.load(spoiler);
+    route = Fixtures.greedyRoute(ctx, Integer.MAX_VALUE);
+
+    midRoute = new hollow.knight.logic.State(ctx);
+    route.subList(0, route.size() / 2).forEach(midRoute::acquireCheck);
+    next = route.get(route.size() / 2);
+  }
+
+  // Acquires an entire route from scratch, then forces reachability to be brought up to date.
+  @Benchmark
+  public boolean acquireRoute() {
+    hollow.knight.logic.State state = new hollow.knight.logic.State(ctx);
+    route.forEach(state::acquireCheck);
+    return state.isInLogic(next);
+  }
+
+  @Benchmark
+  public boolean deepCopyAndAcquire() {
+    hollow.knight.logic.State copy = midRoute.deepCopy();
+    copy.acquireCheck(next);
+    return copy.isInLogic(next);
+  }
+
+  @Benchmark
+  public ItemChecks parseItemChecks() throws Exception {
+    return ItemChecks.parse(ctx.rawSpoilerJson(), ctx.roomLabels());
+  }
+}
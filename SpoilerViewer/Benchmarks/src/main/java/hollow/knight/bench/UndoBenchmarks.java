@@ -0,0 +1,84 @@
+package hollow.knight.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import hollow.knight.gui.UndoHistory;
+import hollow.knight.logic.StateContext;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UndoBenchmarks {
+  @Param("fixtures/RawSpoiler.json")
+  public String spoiler;
+
+  @Param("100")
+  public int historySize;
+
+  private StateContext ctx;
+  private UndoHistory history;
+  private int edits = 0;
+
+  @Setup
+  public void setUp() throws Exception {
+    ctx = Fixtures.load(spoiler);
+  }
+
+  // Starts each iteration from a fresh history, so its size doesn't grow without bound.
+  @Setup(Level.Iteration)
+  public void resetHistory() {
+    if (history != null) {
+      history.close();
+    }
+    history = new UndoHistory("Initial", ctx, UndoHistory.DEFAULT_MEMORY_BUDGET, ex -> {
+      throw new IllegalStateException(ex);
+    });
+    for (int i = 0; i < historySize; i++) {
+      editNotchCost();
+      history.record("Edit " + i, ctx);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    history.close();
+  }
+
+  private void editNotchCost() {
+    List<Integer> costs = new ArrayList<>(ctx.notchCosts().costs());
+    int i = edits++ % costs.size();
+    costs.set(i, (costs.get(i) + 1) % 6);
+    ctx.notchCosts().setCosts(costs);
+  }
+
+  @Benchmark
+  public int record() {
+    editNotchCost();
+    history.record("Edit", ctx);
+    return history.size();
+  }
+
+  @Benchmark
+  public int rewindToStartAndBack() {
+    history.rewindTo(ctx, 0);
+    history.rewindTo(ctx, history.size() - 1);
+    return history.size();
+  }
+}